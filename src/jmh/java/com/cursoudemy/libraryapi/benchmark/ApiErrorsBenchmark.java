@@ -0,0 +1,56 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Montagem e serialização JSON do corpo de erro (ApiErrors).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiErrorsBenchmark {
+
+    private ObjectMapper objectMapper;
+    private BusinessException businessException;
+    private ResponseStatusException notFound;
+    private BindingResult bindingResult;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        businessException = new BusinessException("Isbn já criado");
+        notFound = new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found");
+        bindingResult = new BeanPropertyBindingResult(new BookDTO(), "bookDTO");
+        bindingResult.rejectValue("title", "NotEmpty", "must not be empty");
+        bindingResult.rejectValue("author", "NotEmpty", "must not be empty");
+        bindingResult.rejectValue("isbn", "NotEmpty", "must not be empty");
+    }
+
+    @Benchmark
+    public byte[] businessError() throws Exception {
+        return objectMapper.writeValueAsBytes(new ApiErrors(businessException));
+    }
+
+    @Benchmark
+    public byte[] notFoundError() throws Exception {
+        return objectMapper.writeValueAsBytes(new ApiErrors(notFound));
+    }
+
+    @Benchmark
+    public byte[] validationErrors() throws Exception {
+        return objectMapper.writeValueAsBytes(new ApiErrors(bindingResult));
+    }
+}
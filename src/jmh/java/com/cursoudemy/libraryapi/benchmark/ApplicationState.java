@@ -0,0 +1,64 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.LibraryApiApplication;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sobe a aplicação inteira (H2 embarcado) uma vez por trial e expõe um MockMvc
+ * para exercitar controller, serviço e repositório juntos.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    private final AtomicLong isbnSequence = new AtomicLong();
+
+    ConfigurableApplicationContext context;
+    MockMvc mvc;
+    ObjectMapper objectMapper;
+    BookService bookService;
+    Long existingBookId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("server.port=0",
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        objectMapper = context.getBean(ObjectMapper.class);
+        bookService = context.getBean(BookService.class);
+        existingBookId = newBook().getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    String nextIsbn() {
+        return "bench-" + isbnSequence.incrementAndGet();
+    }
+
+    Book newBook() {
+        return bookService.save(Book.builder().title("As aventuras").author("Artur").isbn(nextIsbn()).build());
+    }
+}
@@ -0,0 +1,78 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.dto.LoanDto;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Caminho completo controller -> serviço -> repositório contra o H2 embarcado.
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=BookApiBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookApiBenchmark {
+
+    /** Livro novo a cada invocação, para os benchmarks que consomem o livro (delete, empréstimo). */
+    @State(Scope.Thread)
+    public static class FreshBook {
+        Book book;
+
+        @Setup(Level.Invocation)
+        public void create(ApplicationState app) {
+            book = app.newBook();
+        }
+    }
+
+    @Benchmark
+    public MvcResult createBook(ApplicationState app) throws Exception {
+        BookDTO dto = BookDTO.builder().title("As aventuras").author("Artur").isbn(app.nextIsbn()).build();
+        return app.mvc.perform(post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(app.objectMapper.writeValueAsBytes(dto)))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getBook(ApplicationState app) throws Exception {
+        return app.mvc.perform(get("/api/books/{id}", app.existingBookId)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult updateBook(ApplicationState app) throws Exception {
+        BookDTO dto = BookDTO.builder().title("Outras aventuras").author("Artur").isbn("ignored").build();
+        return app.mvc.perform(put("/api/books/{id}", app.existingBookId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(app.objectMapper.writeValueAsBytes(dto)))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult deleteBook(ApplicationState app, FreshBook fresh) throws Exception {
+        return app.mvc.perform(delete("/api/books/{id}", fresh.book.getId()))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult createLoan(ApplicationState app, FreshBook fresh) throws Exception {
+        LoanDto dto = LoanDto.builder().customer("Fulano").isbn(fresh.book.getIsbn()).build();
+        return app.mvc.perform(post("/api/loans")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(app.objectMapper.writeValueAsBytes(dto)))
+                .andReturn();
+    }
+}
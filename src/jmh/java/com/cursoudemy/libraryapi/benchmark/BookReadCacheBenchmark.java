@@ -0,0 +1,75 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.LibraryApiApplication;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leituras de livros por id e por isbn com e sem o cache de segundo nível do Hibernate.
+ * Vai direto ao repositório para não misturar o resultado com o cache de isbn do serviço.
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=BookReadCacheBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookReadCacheBenchmark {
+
+    private static final int BOOKS = 1_000;
+
+    @Param({"true", "false"})
+    boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository repository;
+    private final List<Book> books = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:read-cache;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache,
+                        "spring.jpa.properties.hibernate.cache.use_query_cache=" + secondLevelCache,
+                        "logging.level.root=WARN")
+                .run();
+        repository = context.getBean(BookRepository.class);
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(repository.save(Book.builder().title("As aventuras").author("Artur").isbn("read-" + i).build()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Book> findById() {
+        return repository.findById(randomBook().getId());
+    }
+
+    @Benchmark
+    public Optional<Book> findByIsbn() {
+        return repository.findByIsbn(randomBook().getIsbn());
+    }
+
+    private Book randomBook() {
+        return books.get(ThreadLocalRandom.current().nextInt(BOOKS));
+    }
+}
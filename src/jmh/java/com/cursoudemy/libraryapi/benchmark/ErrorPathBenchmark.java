@@ -0,0 +1,69 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminho de um 404 do lançamento ao corpo serializado: exceção com stack trace e
+ * ApiErrors novo a cada vez (como era) contra exceção sem stack trace e corpo em cache.
+ * {@code depth} simula a pilha de chamadas do Tomcat/Spring acima do controller, que
+ * é o que a captura do stack trace percorre.
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=ErrorPathBenchmark
+ * (alocação por operação: rodar o org.openjdk.jmh.Main com -prof gc)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    private static final String MESSAGE = "Livro não encontrado.";
+
+    @Param({"20", "100"})
+    int depth;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public byte[] stackTraceAndNewBody() throws Exception {
+        try {
+            call(depth, true);
+            return null;
+        } catch (ResponseStatusException ex) {
+            return objectMapper.writeValueAsBytes(new ApiErrors(ex));
+        }
+    }
+
+    @Benchmark
+    public byte[] stacklessAndCachedBody() throws Exception {
+        try {
+            call(depth, false);
+            return null;
+        } catch (ResourceNotFoundException ex) {
+            return objectMapper.writeValueAsBytes(ApiErrors.of(ex.getMessage()));
+        }
+    }
+
+    private static int call(int remaining, boolean withStackTrace) {
+        if (remaining > 0) {
+            return call(remaining - 1, withStackTrace) + 1;
+        }
+        if (withStackTrace) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, MESSAGE);
+        }
+        throw new ResourceNotFoundException(MESSAGE);
+    }
+}
@@ -0,0 +1,78 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.LibraryApiApplication;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.service.LoanService;
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Devolução em lote de {@code batchSize} empréstimos por chamada. Cada chamada devolve
+ * empréstimos ativos: antes de cada uma os empréstimos voltam a ficar ativos (fora da
+ * medição). Devoluções por segundo = batchSize / tempo por operação.
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=LoanReturnBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoanReturnBenchmark {
+
+    @Param({"100", "1000"})
+    int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private JdbcTemplate jdbcTemplate;
+    private final List<Long> loanIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:loan-return;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "logging.level.root=WARN")
+                .run();
+        loanService = context.getBean(LoanService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BookRepository books = context.getBean(BookRepository.class);
+        for (int i = 0; i < batchSize; i++) {
+            Book book = books.save(Book.builder().title("As aventuras").author("Artur").isbn("return-" + i).build());
+            Loan loan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+            loanIds.add(loanService.save(loan).getId());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void reactivate() {
+        jdbcTemplate.update("update loan set returned = false, active_book_id = book_id");
+        jdbcTemplate.update("update book_availability set active_loans = 1, available = false");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<LoanReturnResultDTO> returnByIds() {
+        return loanService.returnLoans(loanIds, Collections.emptyList());
+    }
+}
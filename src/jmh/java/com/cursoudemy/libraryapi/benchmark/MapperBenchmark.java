@@ -0,0 +1,83 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.dto.LoanDto;
+import com.cursoudemy.libraryapi.mapper.BookMapper;
+import com.cursoudemy.libraryapi.mapper.LoanMapper;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o ModelMapper (reflexivo) com os mappers escritos à mão.
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=MapperBenchmark
+ * (acrescente "-prof gc" em jmh.includes para ver as alocações por operação).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+
+    private Book book;
+    private BookDTO bookDto;
+    private LoanDto loanDto;
+    private Loan loan;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapper();
+        loanMapper = new LoanMapper();
+
+        book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").build();
+        bookDto = BookDTO.builder().title("As aventuras").author("Artur").isbn("001").build();
+        loanDto = LoanDto.builder().customer("Fulano").isbn("001").build();
+        loan = Loan.builder().id(1L).customer("Fulano").book(book).loanDate(LocalDate.now()).build();
+    }
+
+    @Benchmark
+    public BookDTO modelMapperBookToDto() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO handWrittenBookToDto() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public Book modelMapperDtoToBook() {
+        return modelMapper.map(bookDto, Book.class);
+    }
+
+    @Benchmark
+    public Book handWrittenDtoToBook() {
+        return bookMapper.toEntity(bookDto);
+    }
+
+    @Benchmark
+    public LoanDto modelMapperLoanToDto() {
+        return modelMapper.map(loan, LoanDto.class);
+    }
+
+    @Benchmark
+    public LoanDto handWrittenLoanToDto() {
+        return loanMapper.toDto(loan);
+    }
+
+    @Benchmark
+    public Loan handWrittenDtoToLoan() {
+        return loanMapper.toEntity(loanDto, book, loan.getLoanDate());
+    }
+}
@@ -0,0 +1,85 @@
+package com.cursoudemy.libraryapi.benchmark;
+
+import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.dto.BookPageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialização e leitura das DTOs em JSON, Smile e CBOR. O tamanho de cada payload
+ * é impresso no início de cada fork.
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=WireFormatBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectWriter bookWriter;
+    private ObjectWriter pageWriter;
+    private ObjectWriter errorsWriter;
+    private ObjectReader pageReader;
+
+    private BookDTO book;
+    private BookPageDTO page;
+    private ApiErrors errors;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = "smile".equals(format) ? new SmileMapper()
+                : "cbor".equals(format) ? new CBORMapper()
+                : new ObjectMapper();
+        bookWriter = mapper.writerFor(BookDTO.class);
+        pageWriter = mapper.writerFor(BookPageDTO.class);
+        errorsWriter = mapper.writerFor(ApiErrors.class);
+        pageReader = mapper.readerFor(BookPageDTO.class);
+
+        book = new BookDTO(1L, "As aventuras", "Artur", "978-85-001");
+        List<BookDTO> content = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            content.add(new BookDTO(id, "As aventuras de Artur, volume " + id, "Artur Conan", "978-85-" + id));
+        }
+        page = new BookPageDTO(content, 20L);
+        errors = ApiErrors.of("Book not found");
+        pageBytes = pageWriter.writeValueAsBytes(page);
+
+        System.out.printf("%n%s: livro %d bytes, página de 20 livros %d bytes, erro %d bytes%n", format,
+                bookWriter.writeValueAsBytes(book).length, pageBytes.length, errorsWriter.writeValueAsBytes(errors).length);
+    }
+
+    @Benchmark
+    public byte[] writeBook() throws Exception {
+        return bookWriter.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws Exception {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeErrors() throws Exception {
+        return errorsWriter.writeValueAsBytes(errors);
+    }
+
+    @Benchmark
+    public BookPageDTO readPage() throws Exception {
+        return pageReader.readValue(pageBytes);
+    }
+}
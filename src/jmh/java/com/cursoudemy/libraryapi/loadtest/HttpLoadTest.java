@@ -0,0 +1,177 @@
+package com.cursoudemy.libraryapi.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Teste de carga HTTP contra uma instância já em execução: mantém N requisições
+ * simultâneas (uma conexão cada) em GET /api/books/{id} e mede vazão e latência.
+ *
+ * <pre>
+ * java -jar target/library-api-0.0.1-SNAPSHOT.jar --library.execution.virtual-threads=true
+ * mvn -Pbenchmark test-compile exec:exec@loadtest \
+ *     -Dloadtest.args="--url=http://localhost:8080 --label=virtual --concurrency=1000,5000,10000 --duration=30"
+ * </pre>
+ *
+ * Cada nível gera uma linha em {@code target/loadtest-results.csv}
+ * (label, concorrência, requisições, erros, req/s, p50, p99 e máximo em ms).
+ */
+public class HttpLoadTest {
+
+    private static final int MAX_SAMPLES = 5_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String url = options.getOrDefault("url", "http://localhost:8080");
+        String label = options.getOrDefault("label", "default");
+        int[] levels = Arrays.stream(options.getOrDefault("concurrency", "1000,5000,10000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Path output = Paths.get(options.getOrDefault("output", "target/loadtest-results.csv"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        URI target = URI.create(url + "/api/books/" + seedBook(client, url));
+
+        writeHeaderIfNeeded(output);
+        for (int concurrency : levels) {
+            Result result = run(client, target, concurrency, duration);
+            String line = String.format(java.util.Locale.ROOT, "%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f",
+                    label, concurrency, result.requests, result.errors, result.throughput,
+                    result.p50, result.p99, result.max);
+            System.out.println(line);
+            Files.write(output, (line + System.lineSeparator()).getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static Result run(HttpClient client, URI target, int concurrency, Duration duration) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(target).GET()
+                .header("Accept", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        AtomicLongArray latencies = new AtomicLongArray(MAX_SAMPLES);
+        AtomicInteger samples = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long deadline = System.nanoTime() + duration.toNanos();
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < concurrency; i++) {
+            fire(client, request, deadline, latencies, samples, errors, done);
+        }
+        done.await(duration.toMillis() + 120_000, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+
+        int count = Math.min(samples.get(), MAX_SAMPLES);
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        Result result = new Result();
+        result.requests = samples.get();
+        result.errors = errors.get();
+        result.throughput = (samples.get() - errors.get()) / seconds;
+        result.p50 = percentile(sorted, 0.50);
+        result.p99 = percentile(sorted, 0.99);
+        result.max = count == 0 ? 0 : sorted[count - 1] / 1_000_000.0;
+        return result;
+    }
+
+    /** Mantém uma requisição em voo: ao completar, registra a latência e dispara a próxima. */
+    private static void fire(HttpClient client, HttpRequest request, long deadline, AtomicLongArray latencies,
+                             AtomicInteger samples, AtomicInteger errors, CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    int index = samples.getAndIncrement();
+                    if (index < MAX_SAMPLES) {
+                        latencies.set(index, System.nanoTime() - start);
+                    }
+                    if (failure != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    fire(client, request, deadline, latencies, samples, errors, done);
+                });
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static long seedBook(HttpClient client, String url) throws IOException, InterruptedException {
+        String body = "{\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"load-" + UUID.randomUUID() + "\"}";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/api/books"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = Pattern.compile("\"id\"\\s*:\\s*(\\d+)").matcher(response.body());
+        if (response.statusCode() != 201 || !matcher.find()) {
+            throw new IllegalStateException("Não foi possível criar o livro de teste: " + response.body());
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static void writeHeaderIfNeeded(Path output) throws IOException {
+        if (Files.exists(output)) {
+            return;
+        }
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output))) {
+            writer.println("label,concurrency,requests,errors,requests_per_second,p50_ms,p99_ms,max_ms");
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        // os argumentos podem chegar em um único parâmetro quando passados pelo Maven
+        for (String arg : String.join(" ", args).trim().split("\\s+")) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static class Result {
+        int requests;
+        int errors;
+        double throughput;
+        double p50;
+        double p99;
+        double max;
+    }
+}
@@ -0,0 +1,388 @@
+package com.cursoudemy.libraryapi.loadtest;
+
+import com.cursoudemy.libraryapi.LibraryApiApplication;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de carga que justifica os valores do perfil {@code perf}: sobe a aplicação
+ * (H2 embarcado) uma vez por cenário, cada cenário sendo o perfil com um único valor
+ * trocado, e aplica a mesma carga mista por HTTP:
+ * <ul>
+ *     <li>50% GET /api/books/{id}</li>
+ *     <li>15% GET /api/books?title=... (busca por prefixo)</li>
+ *     <li>10% GET /api/loans?customer=... (histórico)</li>
+ *     <li>10% POST /api/books/isbns/exists com 1 a 64 isbns (listas IN de tamanho variável)</li>
+ *     <li>10% POST /api/books/batch com 20 livros (inserções em lote)</li>
+ *     <li>5% PATCH /api/loans/return com 1 a 16 ids</li>
+ * </ul>
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@perf-profile \
+ *     -Dloadtest.args="--concurrency=32 --warmup=20 --duration=30 --rounds=3 --scenarios=perf,osiv,pool-4"
+ * </pre>
+ *
+ * Cada cenário roda em uma JVM nova, para que o JIT aquecido por um cenário não
+ * favoreça o seguinte, e as rodadas alternam os cenários para diluir a variação da
+ * máquina. Cada execução gera uma linha em {@code target/perf-profile-results.csv}:
+ * cenário, concorrência, requisições, erros, req/s, p50, p99 e máximo em ms, espera
+ * média por conexão e tempo médio de uso da conexão em ms (HikariCP), comandos
+ * preparados por requisição e planos de consulta compilados desde o aquecimento
+ * (estatísticas do Hibernate).
+ * Os três últimos não dependem da carga da máquina e são os que mais separam os cenários.
+ */
+public class PerfProfileLoadTest {
+
+    private static final int BOOKS = 5_000;
+    private static final int LOANS = 2_000;
+    private static final int CUSTOMERS = 200;
+
+    private static final Map<String, String[]> SCENARIOS = new LinkedHashMap<>();
+
+    static {
+        // sem o perfil: padrões do Spring Boot e do H2
+        SCENARIOS.put("sem-perfil", null);
+        SCENARIOS.put("perf", new String[0]);
+        SCENARIOS.put("osiv", new String[]{"spring.jpa.open-in-view=true"});
+        SCENARIOS.put("pool-4", pool(4));
+        SCENARIOS.put("pool-16", pool(16));
+        SCENARIOS.put("pool-32", pool(32));
+        SCENARIOS.put("statement-cache-8", new String[]{"library.db.statement-cache-size=8"});
+        SCENARIOS.put("batch-1", new String[]{"spring.jpa.properties.hibernate.jdbc.batch_size=1"});
+        SCENARIOS.put("sem-padding", new String[]{"spring.jpa.properties.hibernate.query.in_clause_parameter_padding=false"});
+    }
+
+    private static final AtomicLong isbnSequence = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        // o restart do devtools chamaria este main de novo, sem os argumentos
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = parse(args);
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "20")));
+        List<String> scenarios = options.containsKey("scenarios")
+                ? Arrays.asList(options.get("scenarios").split(","))
+                : new ArrayList<>(SCENARIOS.keySet());
+        Path output = Paths.get(options.getOrDefault("output", "target/perf-profile-results.csv"));
+
+        if (!Files.exists(output)) {
+            Files.write(output, ("scenario,concurrency,requests,errors,throughput,p50_ms,p99_ms,max_ms,"
+                    + "acquire_ms,usage_ms,statements_per_request,plan_cache_misses" + System.lineSeparator()).getBytes());
+        }
+        for (String scenario : scenarios) {
+            if (!SCENARIOS.containsKey(scenario)) {
+                throw new IllegalArgumentException("Cenário desconhecido: " + scenario + " " + SCENARIOS.keySet());
+            }
+        }
+        if (!options.containsKey("fork")) {
+            int rounds = Integer.parseInt(options.getOrDefault("rounds", "1"));
+            for (int round = 0; round < rounds; round++) {
+                for (String scenario : scenarios) {
+                    fork(options, scenario);
+                }
+            }
+            return;
+        }
+        String scenario = options.get("scenarios");
+        try (ConfigurableApplicationContext context = start(SCENARIOS.get(scenario))) {
+            String url = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            Workload workload = seed(context, client, url);
+            statistics.clear();
+            run(workload, concurrency, warmup);
+
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            Timer acquire = registry.get("hikaricp.connections.acquire").timer();
+            Timer usage = registry.get("hikaricp.connections.usage").timer();
+            long acquireCount = acquire.count();
+            double acquireTime = acquire.totalTime(TimeUnit.MILLISECONDS);
+            long usageCount = usage.count();
+            double usageTime = usage.totalTime(TimeUnit.MILLISECONDS);
+            long statements = statistics.getPrepareStatementCount();
+
+            Result result = run(workload, concurrency, duration);
+            String line = String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%.3f,%.3f,%.2f,%d",
+                    scenario, concurrency, result.requests, result.errors, result.throughput,
+                    result.p50, result.p99, result.max,
+                    mean(acquire.totalTime(TimeUnit.MILLISECONDS) - acquireTime, acquire.count() - acquireCount),
+                    mean(usage.totalTime(TimeUnit.MILLISECONDS) - usageTime, usage.count() - usageCount),
+                    (double) (statistics.getPrepareStatementCount() - statements) / Math.max(1, result.requests),
+                    statistics.getQueryPlanCacheMissCount());
+            System.out.println(line);
+            Files.write(output, (line + System.lineSeparator()).getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static void fork(Map<String, String> options, String scenario) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                PerfProfileLoadTest.class.getName(),
+                "--fork=true", "--scenarios=" + scenario));
+        options.forEach((key, value) -> {
+            if (!key.equals("scenarios") && !key.equals("fork")) {
+                command.add("--" + key + "=" + value);
+            }
+        });
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException("Cenário " + scenario + " terminou com código " + exit);
+        }
+    }
+
+    private static String[] pool(int size) {
+        return new String[]{"spring.datasource.hikari.maximum-pool-size=" + size,
+                "spring.datasource.hikari.minimum-idle=" + size};
+    }
+
+    private static ConfigurableApplicationContext start(String[] overrides) {
+        String database = "perf-profile";
+        List<String> properties = new ArrayList<>(Arrays.asList("server.port=0",
+                "spring.main.banner-mode=off",
+                "library.scheduling.enabled=false",
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                "logging.level.root=WARN"));
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.SERVLET);
+        if (overrides == null) {
+            properties.add("spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_ON_EXIT=FALSE");
+            properties.add("spring.jpa.show-sql=false");
+        } else {
+            builder.profiles("perf");
+            // a URL é do ambiente, não do perfil: aqui ela leva o cache de comandos recomendado
+            properties.add("spring.datasource.url=jdbc:h2:mem:" + database
+                    + ";DB_CLOSE_ON_EXIT=FALSE;QUERY_CACHE_SIZE=${library.db.statement-cache-size:256}");
+            properties.addAll(Arrays.asList(overrides));
+        }
+        // como argumentos de linha de comando, para valerem sobre o application-perf.properties
+        return builder.run(properties.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+
+    private static Workload seed(ConfigurableApplicationContext context, HttpClient client, String url) throws Exception {
+        BookService bookService = context.getBean(BookService.class);
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(Book.builder().title("Livro " + i).author("Autor " + (i % 500)).isbn(nextIsbn()).build());
+        }
+        List<Book> saved = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i += 1000) {
+            saved.addAll(bookService.saveAll(books.subList(i, Math.min(BOOKS, i + 1000))));
+        }
+        long[] bookIds = saved.stream().mapToLong(Book::getId).toArray();
+        String[] isbns = saved.stream().map(Book::getIsbn).toArray(String[]::new);
+
+        long[] loanIds = new long[LOANS];
+        for (int i = 0; i < LOANS; i++) {
+            String body = "{\"customer\":\"cliente-" + (i % CUSTOMERS) + "\",\"isbn\":\"" + isbns[i] + "\"}";
+            HttpResponse<String> response = client.send(post(url + "/api/loans", body), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Falha ao criar empréstimo: " + response.statusCode() + " " + response.body());
+            }
+            loanIds[i] = Long.parseLong(response.body().trim());
+        }
+        return new Workload(url, client, bookIds, isbns, loanIds);
+    }
+
+    private static Result run(Workload workload, int concurrency, Duration duration) throws InterruptedException {
+        long[][] latencies = new long[concurrency][];
+        int[] counts = new int[concurrency];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long begin = System.nanoTime();
+        long deadline = begin + duration.toNanos();
+        for (int t = 0; t < concurrency; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> {
+                long[] samples = new long[1 << 14];
+                int count = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = workload.client.send(workload.next(), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latencies[index] = samples;
+                    counts[index] = count;
+                    done.countDown();
+                }
+            }, "perf-client-" + t);
+            thread.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int position = 0;
+        for (int t = 0; t < concurrency; t++) {
+            System.arraycopy(latencies[t], 0, all, position, counts[t]);
+            position += counts[t];
+        }
+        Arrays.sort(all);
+        Result result = new Result();
+        result.requests = total;
+        result.errors = errors.get();
+        result.throughput = total / seconds;
+        result.p50 = percentile(all, 0.50);
+        result.p99 = percentile(all, 0.99);
+        result.max = total == 0 ? 0 : all[total - 1] / 1e6;
+        return result;
+    }
+
+    private static double mean(double total, long count) {
+        return count == 0 ? 0 : total / count;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    private static String nextIsbn() {
+        return "perf-" + isbnSequence.incrementAndGet();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : String.join(" ", args).trim().split("\\s+")) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static class Workload {
+        private final String url;
+        private final HttpClient client;
+        private final long[] bookIds;
+        private final String[] isbns;
+        private final long[] loanIds;
+
+        Workload(String url, HttpClient client, long[] bookIds, String[] isbns, long[] loanIds) {
+            this.url = url;
+            this.client = client;
+            this.bookIds = bookIds;
+            this.isbns = isbns;
+            this.loanIds = loanIds;
+        }
+
+        HttpRequest next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int roll = random.nextInt(100);
+            if (roll < 50) {
+                return get("/api/books/" + bookIds[random.nextInt(bookIds.length)]);
+            }
+            if (roll < 65) {
+                return get("/api/books?title=Livro%20" + random.nextInt(1000) + "&size=20");
+            }
+            if (roll < 75) {
+                return get("/api/loans?customer=cliente-" + random.nextInt(CUSTOMERS) + "&size=20");
+            }
+            if (roll < 85) {
+                StringBuilder body = new StringBuilder("[");
+                int size = 1 + random.nextInt(64);
+                for (int i = 0; i < size; i++) {
+                    body.append(i == 0 ? "\"" : ",\"").append(isbns[random.nextInt(isbns.length)]).append('"');
+                }
+                return post(url + "/api/books/isbns/exists", body.append(']').toString());
+            }
+            if (roll < 95) {
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < 20; i++) {
+                    body.append(i == 0 ? "" : ",")
+                            .append("{\"title\":\"Lote\",\"author\":\"Autor\",\"isbn\":\"").append(nextIsbn()).append("\"}");
+                }
+                return post(url + "/api/books/batch", body.append(']').toString());
+            }
+            StringBuilder body = new StringBuilder("{\"ids\":[");
+            int size = 1 + random.nextInt(16);
+            for (int i = 0; i < size; i++) {
+                body.append(i == 0 ? "" : ",").append(loanIds[random.nextInt(loanIds.length)]);
+            }
+            return HttpRequest.newBuilder(URI.create(url + "/api/loans/return"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body.append("]}").toString()))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(URI.create(url + path)).GET()
+                    .header("Accept", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+        }
+    }
+
+    private static class Result {
+        long requests;
+        long errors;
+        double throughput;
+        double p50;
+        double p99;
+        double max;
+    }
+}
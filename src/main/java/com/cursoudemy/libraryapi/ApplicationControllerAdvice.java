@@ -2,6 +2,14 @@ package com.cursoudemy.libraryapi;
 
 import com.cursoudemy.libraryapi.api.exception.ApiErrors;
 import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.exception.ResourceNotFoundException;
+import com.cursoudemy.libraryapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -11,13 +19,31 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 @RestControllerAdvice
 public class ApplicationControllerAdvice {
 
+    static final String ERRORS_METRIC = "library.api.errors";
+
+    private static final ApiErrors CONCURRENT_UPDATE = ApiErrors.of("O livro foi alterado por outra requisição.");
+
+    private final MeterRegistry registry;
+    // contadores por tipo de exceção e por status, criados uma vez e reaproveitados
+    private final Map<Class<?>, Counter> countersByType = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Counter> statusCounters = new AtomicReferenceArray<>(600);
+
+    public ApplicationControllerAdvice(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
     //MethodArgumentNotValidException exception retornada pelo @valid quando não é valido
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleValidationExceptions(MethodArgumentNotValidException ex){
+        count(ex, HttpStatus.BAD_REQUEST);
         BindingResult bindingResult = ex.getBindingResult();
         //List<ObjectError> allErrors = bindingResult.getAllErrors();
         return new ApiErrors(bindingResult);
@@ -25,12 +51,62 @@ public class ApplicationControllerAdvice {
     @ExceptionHandler(BusinessException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleBusinessExcepiton(BusinessException ex){
-        return new ApiErrors(ex);
+        count(ex, HttpStatus.BAD_REQUEST);
+        return ApiErrors.of(ex.getMessage());
+    }
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ApiErrors handleResourceNotFound(ResourceNotFoundException ex){
+        count(ex, HttpStatus.NOT_FOUND);
+        return ApiErrors.of(ex.getMessage());
+    }
+
+    // o livro mudou entre a leitura e o update (coluna @Version)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ApiErrors handleOptimisticLockingFailure(OptimisticLockingFailureException ex){
+        count(ex, HttpStatus.PRECONDITION_FAILED);
+        return CONCURRENT_UPDATE;
+    }
+
+    // fila ou limite de capacidade cheio: o cliente deve tentar de novo
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ApiErrors> handleServiceOverloaded(ServiceOverloadedException ex){
+        count(ex, HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ApiErrors.of(ex.getMessage()));
     }
 
     @ExceptionHandler(ResponseStatusException.class)
     @ResponseStatus
     public ResponseEntity handleResponseStatusException(ResponseStatusException ex){
-        return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
+        countStatus(ex.getStatus());
+        return new ResponseEntity(ApiErrors.of(ex.getReason()), ex.getStatus());
+    }
+
+    private void count(Exception ex, HttpStatus status) {
+        Counter counter = countersByType.get(ex.getClass());
+        if (counter == null) {
+            counter = countersByType.computeIfAbsent(ex.getClass(), type -> Counter.builder(ERRORS_METRIC)
+                    .tag("exception", type.getSimpleName())
+                    .tag("status", String.valueOf(status.value()))
+                    .register(registry));
+        }
+        counter.increment();
+    }
+
+    private void countStatus(HttpStatus status) {
+        int code = status.value();
+        Counter counter = statusCounters.get(code);
+        if (counter == null) {
+            counter = Counter.builder(ERRORS_METRIC)
+                    .tag("exception", ResponseStatusException.class.getSimpleName())
+                    .tag("status", String.valueOf(code))
+                    .register(registry);
+            statusCounters.compareAndSet(code, null, counter);
+        }
+        counter.increment();
     }
 }
@@ -1,6 +1,7 @@
 package com.cursoudemy.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.cursoudemy.libraryapi.mapper.BookMapper;
+import com.cursoudemy.libraryapi.mapper.LoanMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -8,8 +9,12 @@ import org.springframework.context.annotation.Bean;
 @SpringBootApplication
 public class LibraryApiApplication {
 	@Bean
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
+	public BookMapper bookMapper(){
+		return new BookMapper();
+	}
+	@Bean
+	public LoanMapper loanMapper(){
+		return new LoanMapper();
 	}
 	public static void main(String[] args) {
 		SpringApplication.run(LibraryApiApplication.class, args);
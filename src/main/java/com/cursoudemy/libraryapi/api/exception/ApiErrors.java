@@ -5,23 +5,54 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Corpo das respostas de erro. Imutável: os de mensagem fixa vêm de {@link #of(String)}
+ * e são compartilhados entre requisições.
+ */
 public class ApiErrors {
-    private List<String> errors;
+
+    // mensagens de erro são, na prática, um conjunto pequeno e fixo; o limite só
+    // protege contra mensagens montadas com dados da requisição
+    private static final int CACHE_LIMIT = 1024;
+    private static final Map<String, ApiErrors> CACHE = new ConcurrentHashMap<>();
+    private static final ApiErrors NO_MESSAGE = new ApiErrors((String) null);
+
+    private final List<String> errors;
 
     public ApiErrors(BindingResult bindingResult){
-        this.errors = new ArrayList<>();
+        List<String> errors = new ArrayList<>(bindingResult.getErrorCount());
         bindingResult.getAllErrors().forEach(error -> errors.add(error.getDefaultMessage()));
+        this.errors = Collections.unmodifiableList(errors);
     }
     public ApiErrors(BusinessException ex){
-        this.errors = Arrays.asList(ex.getMessage());
+        this(ex.getMessage());
     }
     public ApiErrors(ResponseStatusException ex){
-        this.errors = Arrays.asList(ex.getReason());
+        this(ex.getReason());
+    }
+    public ApiErrors(String message){
+        this.errors = Collections.singletonList(message);
     }
 
+    /** Corpo com uma única mensagem, criado uma vez por mensagem e reaproveitado. */
+    public static ApiErrors of(String message) {
+        if (message == null) {
+            return NO_MESSAGE;
+        }
+        ApiErrors cached = CACHE.get(message);
+        if (cached != null) {
+            return cached;
+        }
+        if (CACHE.size() >= CACHE_LIMIT) {
+            return new ApiErrors(message);
+        }
+        return CACHE.computeIfAbsent(message, ApiErrors::new);
+    }
 
     public List<String> getErrors() {
         return errors;
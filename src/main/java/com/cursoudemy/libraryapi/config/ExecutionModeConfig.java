@@ -0,0 +1,77 @@
+package com.cursoudemy.libraryapi.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Modo de execução das requisições.
+ * Com {@code library.execution.virtual-threads=true} o Tomcat passa a atender cada
+ * requisição em uma virtual thread, então as threads bloqueadas esperando o JDBC
+ * deixam de limitar a concorrência (o limite passa a ser o pool de conexões).
+ * Virtual threads exigem JDK 21+ em tempo de execução; o projeto compila para 17,
+ * por isso o executor é obtido por reflexão e, em JDKs anteriores, o customizer não
+ * é registrado e o Tomcat continua com o próprio pool de threads.
+ * O executor não é exposto como bean, para não desligar o {@code applicationTaskExecutor}
+ * do Spring Boot.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.execution.virtual-threads", havingValue = "true")
+public class ExecutionModeConfig implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionModeConfig.class);
+
+    private ExecutorService requestExecutor;
+
+    @PostConstruct
+    public void logMode() {
+        if (VirtualThreadsAvailable.available()) {
+            log.info("Requisições executadas em virtual threads");
+        } else {
+            log.warn("Virtual threads não disponíveis no JDK {}, mantendo o pool de threads do Tomcat", Runtime.version());
+        }
+    }
+
+    @Bean
+    @Conditional(VirtualThreadsAvailable.class)
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() throws ReflectiveOperationException {
+        requestExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+    }
+
+    static class VirtualThreadsAvailable implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return available();
+        }
+
+        static boolean available() {
+            try {
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    }
+}
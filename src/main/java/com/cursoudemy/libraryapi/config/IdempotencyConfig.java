@@ -0,0 +1,54 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.model.entity.repository.IdempotencyRecordRepository;
+import com.cursoudemy.libraryapi.service.idempotency.IdempotencyStore;
+import com.cursoudemy.libraryapi.service.idempotency.InMemoryIdempotencyStore;
+import com.cursoudemy.libraryapi.service.idempotency.JdbcIdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Idempotency-Key nas criações de livro e de empréstimo. As respostas ficam em memória
+ * (padrão, {@code library.idempotency.max-entries} chaves) ou na base com
+ * {@code library.idempotency.store=jdbc}; nos dois casos por {@code library.idempotency.ttl}.
+ * Corpos acima de {@code library.idempotency.max-body-size} são recusados com 413.
+ * Desligue com {@code library.idempotency.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "library.idempotency.store", havingValue = "memory", matchIfMissing = true)
+    public IdempotencyStore inMemoryIdempotencyStore(@Value("${library.idempotency.max-entries:10000}") long maxEntries,
+                                                     @Value("${library.idempotency.ttl:24h}") Duration ttl) {
+        return new InMemoryIdempotencyStore(maxEntries, ttl);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.idempotency.store", havingValue = "jdbc")
+    public IdempotencyStore jdbcIdempotencyStore(IdempotencyRecordRepository repository, JdbcTemplate jdbcTemplate,
+                                                 @Value("${library.idempotency.ttl:24h}") Duration ttl,
+                                                 @Value("${library.idempotency.claim-timeout:60s}") Duration claimTimeout) {
+        return new JdbcIdempotencyStore(repository, jdbcTemplate, ttl, claimTimeout);
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore store, ObjectMapper objectMapper,
+            @Value("${library.idempotency.wait-timeout:10s}") Duration waitTimeout,
+            @Value("${library.idempotency.max-body-size:64KB}") DataSize maxBodySize) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(store, objectMapper, waitTimeout, maxBodySize.toBytes()));
+        registration.addUrlPatterns("/api/books", "/api/loans");
+        return registration;
+    }
+}
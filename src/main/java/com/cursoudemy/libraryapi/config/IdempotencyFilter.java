@@ -0,0 +1,267 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.service.idempotency.IdempotencyStore;
+import com.cursoudemy.libraryapi.service.idempotency.IdempotentResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Criação idempotente com o cabeçalho {@code Idempotency-Key}: a primeira requisição
+ * com a chave é executada e a resposta é gravada no {@link IdempotencyStore}; as
+ * repetições recebem a mesma resposta (com {@code Idempotency-Replayed: true}) sem
+ * passar pelo controller. Repetições que chegam enquanto a primeira ainda executa
+ * esperam por ela em vez de executar de novo: na mesma instância pelo resultado em
+ * memória, entre instâncias pela reserva da chave no store.
+ * A chave vale por método e caminho, e só para o mesmo corpo: reusá-la com outro corpo
+ * responde 422. Erros 5xx não são gravados, para que o cliente possa tentar de novo.
+ * O corpo é lido inteiro para o fingerprint, então corpos acima de {@code maxBodyBytes}
+ * são recusados com 413. Requisições sem o cabeçalho passam direto.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotency-Replayed";
+    static final int MAX_KEY_LENGTH = 255;
+    private static final long CLAIM_POLL_MILLIS = 50;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final Duration waitTimeout;
+    private final long maxBodyBytes;
+    private final ConcurrentMap<String, CompletableFuture<IdempotentResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper, Duration waitTimeout, long maxBodyBytes) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key deve ter entre 1 e " + MAX_KEY_LENGTH + " caracteres.");
+            return;
+        }
+        String scopedKey = request.getMethod() + " " + request.getRequestURI() + " " + key;
+        byte[] body = readBody(request);
+        if (body == null) {
+            writeError(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Corpo acima de " + maxBodyBytes + " bytes para uma requisição com Idempotency-Key.");
+            return;
+        }
+        String fingerprint = fingerprint(body);
+
+        while (true) {
+            Optional<IdempotentResponse> stored = store.find(scopedKey);
+            if (stored.isPresent()) {
+                replay(stored.get(), fingerprint, response);
+                return;
+            }
+            CompletableFuture<IdempotentResponse> execution = new CompletableFuture<>();
+            CompletableFuture<IdempotentResponse> running = inFlight.putIfAbsent(scopedKey, execution);
+            if (running == null) {
+                execute(scopedKey, execution, new CachedBodyRequest(request, body), response, chain, fingerprint);
+                return;
+            }
+            IdempotentResponse coalesced;
+            try {
+                coalesced = running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                // a execução em andamento falhou sem resposta: tenta de novo, agora talvez como a primeira
+                inFlight.remove(scopedKey, running);
+                continue;
+            } catch (TimeoutException e) {
+                writeError(response, HttpStatus.CONFLICT, "Requisição com a mesma Idempotency-Key ainda em andamento.");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            }
+            replay(coalesced, fingerprint, response);
+            return;
+        }
+    }
+
+    private void execute(String scopedKey, CompletableFuture<IdempotentResponse> execution, HttpServletRequest request,
+                         HttpServletResponse response, FilterChain chain, String fingerprint)
+            throws ServletException, IOException {
+        boolean claimed = false;
+        try {
+            // a chave é reservada no store antes de executar: com o store na base, a mesma chave
+            // em outra instância espera a resposta desta em vez de criar outro livro ou empréstimo
+            long deadline = System.nanoTime() + waitTimeout.toNanos();
+            while (!(claimed = store.claim(scopedKey, fingerprint))) {
+                Optional<IdempotentResponse> stored = store.find(scopedKey);
+                if (stored.isPresent()) {
+                    execution.complete(stored.get());
+                    replay(stored.get(), fingerprint, response);
+                    return;
+                }
+                if (System.nanoTime() > deadline) {
+                    execution.completeExceptionally(new TimeoutException());
+                    writeError(response, HttpStatus.CONFLICT, "Requisição com a mesma Idempotency-Key ainda em andamento.");
+                    return;
+                }
+                Thread.sleep(CLAIM_POLL_MILLIS);
+            }
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            chain.doFilter(request, wrapper);
+            IdempotentResponse result = new IdempotentResponse(fingerprint, wrapper.getStatus(),
+                    wrapper.getContentType(), wrapper.getContentAsByteArray(), Instant.now());
+            wrapper.copyBodyToResponse();
+            if (result.getStatus() < 500) {
+                store.save(scopedKey, result);
+                claimed = false;
+                execution.complete(result);
+            } else {
+                // erro 5xx não é a resposta da chave: quem espera executa de novo em vez de repeti-lo
+                store.release(scopedKey);
+                claimed = false;
+                execution.completeExceptionally(new IllegalStateException("Resposta " + result.getStatus() + " não guardada"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            execution.completeExceptionally(e);
+            throw new ServletException(e);
+        } catch (IOException | ServletException | RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (claimed) {
+                store.release(scopedKey);
+            }
+            inFlight.remove(scopedKey, execution);
+        }
+    }
+
+    // null se o corpo passar do limite; lê no máximo um byte além dele
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long copied = StreamUtils.copyRange(request.getInputStream(), body, 0, maxBodyBytes);
+        if (copied > maxBodyBytes) {
+            return null;
+        }
+        return body.toByteArray();
+    }
+
+    private void replay(IdempotentResponse stored, String fingerprint, HttpServletResponse response) throws IOException {
+        if (!stored.getFingerprint().equals(fingerprint)) {
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key já usada com outro corpo de requisição.");
+            return;
+        }
+        response.setStatus(stored.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiErrors.of(message));
+    }
+
+    private static String fingerprint(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // o corpo já foi lido para calcular o fingerprint; o controller lê desta cópia
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.service.ratelimit.ClientRateLimiter;
+import com.cursoudemy.libraryapi.service.ratelimit.LoadShedder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Proteção da API contra excesso de requisições, nos filtros antes do controller
+ * (e antes do filtro de Idempotency-Key), então requisições recusadas não chegam aos serviços.
+ * Com {@code library.ratelimit.enabled=true}, limite por cliente ({@code library.ratelimit.rate}
+ * requisições por segundo, rajadas de {@code library.ratelimit.burst}); com
+ * {@code library.load-shedding.enabled=true}, descarte quando há requisições demais em andamento
+ * ou a espera por conexão do pool passa de {@code library.load-shedding.max-pool-wait}.
+ * As recusas são contadas em {@code library.api.rejected}, por motivo.
+ */
+@Configuration
+public class LoadProtectionConfig {
+
+    static final String REJECTED_METRIC = "library.api.rejected";
+    static final String POOL_ACQUIRE_METRIC = "hikaricp.connections.acquire";
+
+    private static final String[] API_PATTERNS = {"/api/*"};
+
+    @Bean
+    @ConditionalOnProperty(name = "library.ratelimit.enabled", havingValue = "true")
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(
+            ObjectMapper objectMapper, ObjectProvider<MeterRegistry> registry,
+            @Value("${library.ratelimit.rate:20}") double ratePerSecond,
+            @Value("${library.ratelimit.burst:40}") int burst,
+            @Value("${library.ratelimit.max-clients:100000}") long maxClients) {
+        Counter rejected = rejectedCounter(registry.getIfAvailable(() -> Metrics.globalRegistry), "rate-limit");
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(new RateLimitFilter(
+                new ClientRateLimiter(ratePerSecond, burst, maxClients), objectMapper, rejected));
+        registration.addUrlPatterns(API_PATTERNS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.load-shedding.enabled", havingValue = "true")
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(
+            ObjectMapper objectMapper, ObjectProvider<MeterRegistry> registry,
+            @Value("${library.load-shedding.max-in-flight:150}") int maxInFlight,
+            @Value("${library.load-shedding.max-pool-wait:500ms}") Duration maxPoolWait,
+            @Value("${library.load-shedding.window:1s}") Duration window) {
+        MeterRegistry meterRegistry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+        // o timer do pool só é registrado quando o Hikari abre as conexões
+        LoadShedder shedder = new LoadShedder(maxInFlight, maxPoolWait, window,
+                () -> meterRegistry.find(POOL_ACQUIRE_METRIC).timer());
+        Map<LoadShedder.Decision, Counter> rejected = new EnumMap<>(LoadShedder.Decision.class);
+        rejected.put(LoadShedder.Decision.IN_FLIGHT, rejectedCounter(meterRegistry, "in-flight"));
+        rejected.put(LoadShedder.Decision.POOL_WAIT, rejectedCounter(meterRegistry, "pool-wait"));
+        FilterRegistrationBean<LoadSheddingFilter> registration = new FilterRegistrationBean<>(
+                new LoadSheddingFilter(shedder, objectMapper, rejected::get));
+        registration.addUrlPatterns(API_PATTERNS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    private static Counter rejectedCounter(MeterRegistry registry, String reason) {
+        return Counter.builder(REJECTED_METRIC).tag("reason", reason).register(registry);
+    }
+}
@@ -0,0 +1,56 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.service.ratelimit.LoadShedder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Responde 503 com {@code Retry-After} enquanto o {@link LoadShedder} recusar
+ * requisições, antes que elas cheguem ao controller.
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private static final ApiErrors OVERLOADED = ApiErrors.of("Serviço sobrecarregado, tente novamente em instantes.");
+
+    private final LoadShedder shedder;
+    private final ObjectMapper objectMapper;
+    private final Function<LoadShedder.Decision, Counter> rejected;
+
+    public LoadSheddingFilter(LoadShedder shedder, ObjectMapper objectMapper,
+                              Function<LoadShedder.Decision, Counter> rejected) {
+        this.shedder = shedder;
+        this.objectMapper = objectMapper;
+        this.rejected = rejected;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        LoadShedder.Decision decision = shedder.tryEnter();
+        if (decision != LoadShedder.Decision.ACCEPTED) {
+            rejected.apply(decision).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), OVERLOADED);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            shedder.exit();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.service.BookService;
+import com.cursoudemy.libraryapi.service.LoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+
+/**
+ * Instrumentação dos serviços. Endpoints ({@code http.server.requests}) e consultas
+ * dos repositórios ({@code spring.data.repository.invocations}) já são medidos pelo
+ * Actuator; os histogramas são configurados no application.properties.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static Advisor serviceTimingAdvisor(ObjectProvider<MeterRegistry> registry) {
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return isServiceMethod(BookService.class, method, targetClass)
+                        || isServiceMethod(LoanService.class, method, targetClass);
+            }
+        };
+        return new DefaultPointcutAdvisor(pointcut, new ServiceTimingInterceptor(registry));
+    }
+
+    private static boolean isServiceMethod(Class<?> service, Method method, Class<?> targetClass) {
+        if (!service.isAssignableFrom(targetClass)) {
+            return false;
+        }
+        try {
+            service.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
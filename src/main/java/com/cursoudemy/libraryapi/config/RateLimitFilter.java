@@ -0,0 +1,66 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.service.ratelimit.ClientRateLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limite de requisições por cliente: acima do limite a resposta é 429 com
+ * {@code Retry-After}, sem chegar ao controller. O cliente é identificado pelo
+ * cabeçalho {@code X-API-Key} e, sem ele, pelo endereço de origem da requisição
+ * (atrás de proxy, configure {@code server.forward-headers-strategy}).
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+    static final int MAX_API_KEY_LENGTH = 128;
+
+    private static final ApiErrors TOO_MANY_REQUESTS = ApiErrors.of("Limite de requisições excedido, tente novamente mais tarde.");
+
+    private final ClientRateLimiter limiter;
+    private final ObjectMapper objectMapper;
+    private final Counter rejected;
+
+    public RateLimitFilter(ClientRateLimiter limiter, ObjectMapper objectMapper, Counter rejected) {
+        this.limiter = limiter;
+        this.objectMapper = objectMapper;
+        this.rejected = rejected;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long waitNanos = limiter.tryAcquire(client(request));
+        if (waitNanos > 0) {
+            rejected.increment();
+            long retryAfter = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), TOO_MANY_REQUESTS);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // chaves longas demais não identificam ninguém e só ocupariam memória no limitador
+    private static String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isEmpty() && apiKey.length() <= MAX_API_KEY_LENGTH) {
+            return "key:" + apiKey;
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,15 @@
+package com.cursoudemy.libraryapi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Liga os jobs agendados (como o de empréstimos em atraso). Desligue com
+ * {@code library.scheduling.enabled=false} nas instâncias que não devem executá-los.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "library.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
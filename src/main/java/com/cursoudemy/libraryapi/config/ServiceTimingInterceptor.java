@@ -0,0 +1,60 @@
+package com.cursoudemy.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede a duração de cada método dos serviços no timer {@code library.service}
+ * (tags service, method e outcome). Os timers são criados uma vez por método e
+ * guardados em cache, então cada chamada só faz dois {@code nanoTime} e um
+ * {@code record}, sem montar tags nem procurar o medidor no registry.
+ * O registry é resolvido só no primeiro uso: advisors são criados antes dos demais
+ * beans, e pedir o MeterRegistry nesse momento impediria o Boot de aplicar os
+ * MeterFilters (histogramas configurados por propriedade) a ele.
+ */
+public class ServiceTimingInterceptor implements MethodInterceptor {
+
+    static final String METRIC = "library.service";
+
+    private final ObjectProvider<MeterRegistry> registry;
+    private final Map<Method, Timer> success = new ConcurrentHashMap<>();
+    private final Map<Method, Timer> failure = new ConcurrentHashMap<>();
+
+    public ServiceTimingInterceptor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            timer(success, invocation.getMethod(), "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(failure, invocation.getMethod(), "error").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(Map<Method, Timer> cache, Method method, String outcome) {
+        Timer timer = cache.get(method);
+        if (timer == null) {
+            timer = cache.computeIfAbsent(method, m -> Timer.builder(METRIC)
+                    .tag("service", m.getDeclaringClass().getSimpleName())
+                    .tag("method", m.getName())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry.getObject()));
+        }
+        return timer;
+    }
+}
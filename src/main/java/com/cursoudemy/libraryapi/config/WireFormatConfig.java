@@ -0,0 +1,33 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Formatos binários para o tráfego entre serviços: com {@code Accept} (e, nos envios,
+ * {@code Content-Type}) {@code application/x-jackson-smile} ou {@code application/cbor}
+ * as mesmas DTOs vão em Smile ou CBOR em vez de JSON. Sem {@code Accept}, ou com
+ * {@code *}{@code /*}, a resposta continua em JSON, que vem antes na lista de conversores.
+ * Os mappers saem do mesmo builder do Spring Boot que o JSON, então as configurações
+ * {@code spring.jackson.*} valem para os três formatos.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
@@ -0,0 +1,14 @@
+package com.cursoudemy.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class BookAvailabilityDTO {
+
+    private Long bookId;
+    private int activeLoans;
+    private boolean available;
+}
@@ -0,0 +1,19 @@
+package com.cursoudemy.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class BookBatchResultDTO {
+
+    private int received;
+    private int created;
+    private int invalid;
+    @Builder.Default
+    private List<String> duplicatedIsbns = new ArrayList<>();
+}
@@ -1,5 +1,6 @@
 package com.cursoudemy.libraryapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 import javax.validation.constraints.NotEmpty;
@@ -14,4 +15,11 @@ public class BookDTO {
     private String author;
     @NotEmpty
     private String isbn;
+    /** Só preenchida com {@code embed=availability}; ignorada na entrada. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BookAvailabilityDTO availability;
+
+    public BookDTO(Long id, String title, String author, String isbn) {
+        this(id, title, author, isbn, null);
+    }
 }
@@ -0,0 +1,19 @@
+package com.cursoudemy.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de livros com cursor: {@code next} é o valor a passar em {@code after}
+ * para obter a página seguinte, ou nulo quando não há mais resultados.
+ */
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class BookPageDTO {
+
+    private List<BookDTO> content;
+    private Long next;
+}
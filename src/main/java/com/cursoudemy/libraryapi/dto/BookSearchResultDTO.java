@@ -0,0 +1,20 @@
+package com.cursoudemy.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página da busca de texto completo, ordenada por relevância.
+ */
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class BookSearchResultDTO {
+
+    private List<BookDTO> content;
+    private int page;
+    private int size;
+    private long total;
+}
@@ -0,0 +1,20 @@
+package com.cursoudemy.libraryapi.dto;
+
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página do histórico de empréstimos, do mais recente para o mais antigo: {@code next}
+ * é o valor a passar em {@code before} para obter a página seguinte, ou nulo no fim.
+ */
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class LoanPageDTO {
+
+    private List<LoanHistory> content;
+    private Long next;
+}
@@ -0,0 +1,21 @@
+package com.cursoudemy.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Devolução em lote: ids de empréstimos e/ou isbns de livros emprestados.
+ */
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class LoanReturnDTO {
+
+    @Builder.Default
+    private List<Long> ids = new ArrayList<>();
+    @Builder.Default
+    private List<String> isbns = new ArrayList<>();
+}
@@ -0,0 +1,23 @@
+package com.cursoudemy.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado da devolução de um item do lote, na ordem em que foi enviado.
+ */
+@Data @Builder @AllArgsConstructor @NoArgsConstructor
+public class LoanReturnResultDTO {
+
+    private Long loanId;
+    private String isbn;
+    private Status status;
+
+    public enum Status {
+        RETURNED,
+        ALREADY_RETURNED,
+        NOT_FOUND
+    }
+}
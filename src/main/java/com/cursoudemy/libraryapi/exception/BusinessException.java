@@ -1,7 +1,12 @@
 package com.cursoudemy.libraryapi.exception;
 
+/**
+ * Resultado esperado de uma regra de negócio (isbn duplicado, livro já emprestado...),
+ * não um defeito: é criada sem stack trace, que não seria lido e custaria mais que
+ * o resto da resposta de erro.
+ */
 public class BusinessException extends RuntimeException {
     public BusinessException(String s) {
-        super(s);
+        super(s, null, false, false);
     }
 }
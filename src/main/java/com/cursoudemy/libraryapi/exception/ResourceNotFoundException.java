@@ -0,0 +1,10 @@
+package com.cursoudemy.libraryapi.exception;
+
+/**
+ * O recurso pedido não existe (404). Sem stack trace, como toda {@link BusinessException}.
+ */
+public class ResourceNotFoundException extends BusinessException {
+    public ResourceNotFoundException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,12 @@
+package com.cursoudemy.libraryapi.exception;
+
+/**
+ * A requisição foi recusada porque a aplicação está no limite da capacidade;
+ * o cliente pode tentar de novo depois de alguns segundos. Sem stack trace: sob
+ * sobrecarga ela é frequente e não indica defeito.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String s) {
+        super(s, null, false, false);
+    }
+}
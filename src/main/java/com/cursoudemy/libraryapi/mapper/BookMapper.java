@@ -0,0 +1,30 @@
+package com.cursoudemy.libraryapi.mapper;
+
+import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.model.entity.Book;
+
+/**
+ * Conversão entre {@link Book} e {@link BookDTO} escrita à mão: sem reflexão e
+ * sem alocações além do objeto de destino.
+ */
+public class BookMapper {
+
+    public BookDTO toDto(Book book) {
+        if (book == null) {
+            return null;
+        }
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+    }
+
+    public Book toEntity(BookDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        Book book = new Book();
+        book.setId(dto.getId());
+        book.setTitle(dto.getTitle());
+        book.setAuthor(dto.getAuthor());
+        book.setIsbn(dto.getIsbn());
+        return book;
+    }
+}
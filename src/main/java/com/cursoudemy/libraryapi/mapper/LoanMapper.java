@@ -0,0 +1,33 @@
+package com.cursoudemy.libraryapi.mapper;
+
+import com.cursoudemy.libraryapi.dto.LoanDto;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+
+import java.time.LocalDate;
+
+/**
+ * Conversão entre {@link Loan} e {@link LoanDto} escrita à mão. O livro já deve ter
+ * sido resolvido pelo isbn antes de montar a entidade.
+ */
+public class LoanMapper {
+
+    public Loan toEntity(LoanDto dto, Book book, LocalDate loanDate) {
+        if (dto == null) {
+            return null;
+        }
+        Loan loan = new Loan();
+        loan.setCustomer(dto.getCustomer());
+        loan.setBook(book);
+        loan.setLoanDate(loanDate);
+        return loan;
+    }
+
+    public LoanDto toDto(Loan loan) {
+        if (loan == null) {
+            return null;
+        }
+        Book book = loan.getBook();
+        return new LoanDto(loan.getCustomer(), book == null ? null : book.getIsbn());
+    }
+}
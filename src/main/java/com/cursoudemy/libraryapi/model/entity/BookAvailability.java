@@ -0,0 +1,33 @@
+package com.cursoudemy.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+/**
+ * Projeção da disponibilidade de um livro, mantida na mesma transação que cria ou
+ * devolve o empréstimo: responde "quantos exemplares estão emprestados" sem contar
+ * linhas de {@link Loan}. Livros sem linha aqui nunca foram emprestados.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class BookAvailability {
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+    private int activeLoans;
+    @Builder.Default
+    private boolean available = true;
+    /** Ordena as atualizações na cópia em memória: a de versão maior prevalece. */
+    @Version
+    private Long version;
+}
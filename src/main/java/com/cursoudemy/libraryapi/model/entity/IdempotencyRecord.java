@@ -0,0 +1,40 @@
+package com.cursoudemy.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Resposta gravada para uma Idempotency-Key, usada pelo store na base
+ * ({@code library.idempotency.store=jdbc}).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(indexes = @Index(name = "idx_idempotency_created_at", columnList = "created_at"))
+public class IdempotencyRecord {
+    public static final int MAX_BODY_BYTES = 65536;
+
+    @Id
+    @Column(name = "idempotency_key", length = 320)
+    private String key;
+    @Column(length = 64, nullable = false)
+    private String fingerprint;
+    private int status;
+    @Column(length = 100)
+    private String contentType;
+    @Column(length = MAX_BODY_BYTES)
+    private byte[] body;
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,34 @@
+package com.cursoudemy.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Progresso de um job em lotes: o cursor (data, id) do último item processado
+ * permite retomar a execução de onde parou depois de uma queda.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+public class JobCheckpoint {
+    @Id
+    @Column(length = 50)
+    private String name;
+    /** Data de corte da execução em andamento; mantida ao retomar. */
+    private LocalDate cutoff;
+    private LocalDate lastDate;
+    private Long lastId;
+    private long processed;
+    private boolean finished;
+    private Instant updatedAt;
+}
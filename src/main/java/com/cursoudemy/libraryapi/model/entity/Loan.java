@@ -1,21 +1,59 @@
 package com.cursoudemy.libraryapi.model.entity;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
-import javax.persistence.Entity;
+import javax.persistence.*;
 import java.time.LocalDate;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_book_returned", columnList = "book_id, returned"),
+        @Index(name = "idx_loan_customer_date", columnList = "customer, loan_date"),
+        @Index(name = "idx_loan_returned_date", columnList = "returned, loan_date, id"),
+        @Index(name = "idx_loan_customer_id", columnList = "customer, id"),
+        @Index(name = "idx_loan_book_id", columnList = "book_id, id")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_loan_active_book", columnNames = "active_book_id"))
 public class Loan {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
+    @Column(length = 100)
     private String customer;
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "book_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Book book;
+    @Column(name = "loan_date")
     private LocalDate loanDate;
+    @Column(nullable = false)
     private Boolean returned;
+
+    /**
+     * Id do livro enquanto o empréstimo está ativo e nulo depois da devolução.
+     * A constraint única nesta coluna (que aceita vários nulos) funciona como um
+     * índice único parcial portável: o banco garante no máximo um empréstimo ativo
+     * por livro, mesmo com requisições concorrentes. Mantido pelo próprio Loan.
+     */
+    @Column(name = "active_book_id")
+    @Setter(AccessLevel.NONE)
+    private Long activeBookId;
+
+    @PrePersist
+    @PreUpdate
+    void syncActiveBook() {
+        activeBookId = Boolean.TRUE.equals(returned) || book == null ? null : book.getId();
+    }
 }
@@ -0,0 +1,45 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import com.cursoudemy.libraryapi.model.entity.BookAvailability;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface BookAvailabilityRepository extends JpaRepository<BookAvailability, Long> {
+
+    /** Lê com bloqueio: contadores do mesmo livro são alterados um de cada vez. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from BookAvailability a where a.bookId = :bookId")
+    Optional<BookAvailability> findForUpdate(@Param("bookId") Long bookId);
+
+    @QueryHints({@QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_FETCH_SIZE, value = "1000")})
+    @Query("select a from BookAvailability a")
+    Stream<BookAvailability> streamAll();
+
+    /**
+     * Um empréstimo a menos para cada livro informado, em um único update. Em JPQL o
+     * Hibernate invalida só a região de {@link BookAvailability}; um update nativo
+     * limparia todo o cache de segundo nível e o cache de consultas.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BookAvailability a set a.activeLoans = a.activeLoans - 1, a.version = a.version + 1 "
+            + "where a.bookId in :bookIds and a.activeLoans > 0")
+    int decrementActiveLoans(@Param("bookIds") Collection<Long> bookIds);
+
+    /** Marca como disponíveis os livros informados que ficaram sem empréstimo ativo. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BookAvailability a set a.available = true where a.bookId in :bookIds and a.activeLoans = 0")
+    int markAvailable(@Param("bookIds") Collection<Long> bookIds);
+}
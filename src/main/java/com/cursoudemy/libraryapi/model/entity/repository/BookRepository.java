@@ -2,8 +2,25 @@ package com.cursoudemy.libraryapi.model.entity.repository;
 
 import com.cursoudemy.libraryapi.model.entity.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    // consultas por isbn vão para o query cache do Hibernate; a região é invalidada
+    // automaticamente a cada insert, update ou delete na tabela book
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
     boolean existsByIsbn(String isbn);
+
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
+    Optional<Book> findByIsbn(String isbn);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
 }
@@ -0,0 +1,40 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Persiste os livros em lote (insert em batch via JDBC) e limpa o contexto
+     * de persistência em seguida, para que importações grandes não acumulem
+     * entidades em memória.
+     */
+    void insertAll(Collection<Book> books);
+
+    /**
+     * Paginação por chave (keyset): retorna até {@code size} livros com id maior que
+     * {@code lastId}, em ordem de id. As entidades voltam desanexadas, então percorrer
+     * o catálogo inteiro página a página mantém o uso de memória constante.
+     */
+    List<Book> findPageAfter(Long lastId, int size);
+
+    /**
+     * Retorna até {@code size} livros que atendem ao filtro, na ordem {@code sort} e sem
+     * consulta de contagem. Combinado com {@link BookSpecifications#idGreaterThan(Long)}
+     * ou {@link BookSpecifications#after(String, String, Long)} implementa paginação por
+     * chave com custo constante em qualquer página.
+     */
+    List<Book> findPage(Specification<Book> spec, Sort sort, int size);
+
+    /**
+     * Percorre os isbns de todo o catálogo em streaming, sem carregar entidades,
+     * para montar estruturas em memória como o filtro de Bloom de isbns.
+     */
+    void forEachIsbn(Consumer<String> action);
+}
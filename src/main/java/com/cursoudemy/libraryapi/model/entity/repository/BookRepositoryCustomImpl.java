@@ -0,0 +1,80 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private static final int ISBN_FETCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertAll(Collection<Book> books) {
+        books.forEach(entityManager::persist);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> findPageAfter(Long lastId, int size) {
+        List<Book> books = entityManager
+                .createQuery("select b from Book b where b.id > :lastId order by b.id", Book.class)
+                .setParameter("lastId", lastId == null ? 0L : lastId)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_FETCH_SIZE, size)
+                .setMaxResults(size)
+                .getResultList();
+        books.forEach(entityManager::detach);
+        return books;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> findPage(Specification<Book> spec, Sort sort, int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachIsbn(Consumer<String> action) {
+        try (Stream<String> isbns = entityManager
+                .createQuery("select b.isbn from Book b", String.class)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_FETCH_SIZE, ISBN_FETCH_SIZE)
+                .getResultStream()) {
+            isbns.forEach(action);
+        }
+    }
+}
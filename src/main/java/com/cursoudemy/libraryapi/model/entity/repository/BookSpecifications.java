@@ -0,0 +1,57 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filtros dinâmicos da busca de livros. Todos são por prefixo ({@code like 'x%'}),
+ * para que o banco consiga usar os índices de title, author e isbn.
+ * Valores nulos ou vazios não geram filtro.
+ */
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> titleStartsWith(String title) {
+        return startsWith("title", title);
+    }
+
+    public static Specification<Book> authorStartsWith(String author) {
+        return startsWith("author", author);
+    }
+
+    public static Specification<Book> isbnStartsWith(String isbn) {
+        return startsWith("isbn", isbn);
+    }
+
+    public static Specification<Book> idGreaterThan(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), id);
+    }
+
+    /**
+     * Livros depois de ({@code value}, {@code id}) na ordem de {@code attribute} e id:
+     * a condição da paginação por chave quando a busca é ordenada por um índice
+     * ({@code attribute}, id). O {@code >=} redundante deixa o início do trecho explícito
+     * para o otimizador.
+     */
+    public static Specification<Book> after(String attribute, String value, Long id) {
+        if (id == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.and(cb.greaterThanOrEqualTo(root.get(attribute), value),
+                cb.or(cb.greaterThan(root.get(attribute), value),
+                        cb.and(cb.equal(root.get(attribute), value), cb.greaterThan(root.get("id"), id))));
+    }
+
+    private static Specification<Book> startsWith(String attribute, String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.like(root.get(attribute), pattern, '\\');
+    }
+}
@@ -0,0 +1,35 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import com.cursoudemy.libraryapi.model.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+
+    /**
+     * Assume a chave se a reserva atual foi abandonada (anterior a {@code staleClaim}) ou
+     * se a resposta gravada já venceu (anterior a {@code expired}).
+     */
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.fingerprint = :fingerprint, r.status = 0, r.contentType = null, "
+            + "r.body = null, r.createdAt = :now where r.key = :key "
+            + "and ((r.status = 0 and r.createdAt < :staleClaim) or r.createdAt < :expired)")
+    int takeOver(@Param("key") String key, @Param("fingerprint") String fingerprint, @Param("now") Instant now,
+                 @Param("staleClaim") Instant staleClaim, @Param("expired") Instant expired);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.key = :key and r.status = 0")
+    int deleteClaim(@Param("key") String key);
+}
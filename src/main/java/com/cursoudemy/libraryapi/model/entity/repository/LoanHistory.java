@@ -0,0 +1,24 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Projeção de um empréstimo para o histórico: montada direto pela consulta, com os
+ * dados do livro vindos do mesmo join, sem carregar {@code Loan} nem {@code Book}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanHistory {
+    private Long id;
+    private String customer;
+    private LocalDate loanDate;
+    private Boolean returned;
+    private Long bookId;
+    private String isbn;
+    private String title;
+}
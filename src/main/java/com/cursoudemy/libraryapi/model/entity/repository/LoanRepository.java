@@ -0,0 +1,77 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+
+    boolean existsByBookIdAndReturnedFalse(Long bookId);
+
+    /**
+     * Empréstimos não devolvidos feitos antes de {@code cutoff}, depois do cursor
+     * ({@code lastDate}, {@code lastId}), em ordem de data e id. Percorre o índice
+     * idx_loan_returned_date por faixa: o custo de cada página não depende de quantas
+     * já foram lidas.
+     */
+    @Query("select new com.cursoudemy.libraryapi.model.entity.repository.OverdueLoan(l.id, l.customer, b.id, b.isbn, l.loanDate) "
+            + "from Loan l join l.book b "
+            + "where l.returned = false and l.loanDate < :cutoff "
+            + "and (l.loanDate > :lastDate or (l.loanDate = :lastDate and l.id > :lastId)) "
+            + "order by l.loanDate, l.id")
+    List<OverdueLoan> findOverdueAfter(@Param("cutoff") LocalDate cutoff,
+                                       @Param("lastDate") LocalDate lastDate,
+                                       @Param("lastId") Long lastId,
+                                       Pageable page);
+
+    /**
+     * Histórico do cliente, do mais recente para o mais antigo, a partir do cursor
+     * {@code before} (exclusivo). Uma única consulta por página, já com os dados do livro.
+     */
+    @Query("select new com.cursoudemy.libraryapi.model.entity.repository.LoanHistory("
+            + "l.id, l.customer, l.loanDate, l.returned, b.id, b.isbn, b.title) "
+            + "from Loan l join l.book b "
+            + "where l.customer = :customer and l.id < :before "
+            + "order by l.id desc")
+    List<LoanHistory> findHistoryByCustomer(@Param("customer") String customer,
+                                            @Param("before") Long before,
+                                            Pageable page);
+
+    /** Histórico do livro, nas mesmas condições de {@link #findHistoryByCustomer}. */
+    @Query("select new com.cursoudemy.libraryapi.model.entity.repository.LoanHistory("
+            + "l.id, l.customer, l.loanDate, l.returned, b.id, b.isbn, b.title) "
+            + "from Loan l join l.book b "
+            + "where b.id = :bookId and l.id < :before "
+            + "order by l.id desc")
+    List<LoanHistory> findHistoryByBook(@Param("bookId") Long bookId,
+                                        @Param("before") Long before,
+                                        Pageable page);
+
+    /**
+     * Estado dos empréstimos informados, bloqueando as linhas até o fim da transação
+     * para que duas devoluções simultâneas não informem as duas "devolvido".
+     */
+    @Query(nativeQuery = true, value = "select l.id as id, l.book_id as bookId, l.returned as returned, b.isbn as isbn "
+            + "from loan l join book b on b.id = l.book_id where l.id in (:ids) for update")
+    List<LoanState> lockByIds(@Param("ids") Collection<Long> ids);
+
+    /** Empréstimos ativos dos livros com os isbns informados, com bloqueio como em {@link #lockByIds}. */
+    @Query(nativeQuery = true, value = "select l.id as id, l.book_id as bookId, l.returned as returned, b.isbn as isbn "
+            + "from loan l join book b on b.id = l.active_book_id where b.isbn in (:isbns) for update")
+    List<LoanState> lockActiveByIsbns(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Devolve todos de uma vez. Update em massa não passa pelos callbacks da entidade,
+     * por isso active_book_id é limpo aqui também.
+     */
+    @Modifying
+    @Query("update Loan l set l.returned = true, l.activeBookId = null where l.id in :ids")
+    int markReturned(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,14 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+/**
+ * Projeção mínima de um empréstimo para a devolução em lote.
+ */
+public interface LoanState {
+    Long getId();
+
+    Long getBookId();
+
+    Boolean getReturned();
+
+    String getIsbn();
+}
@@ -0,0 +1,22 @@
+package com.cursoudemy.libraryapi.model.entity.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Projeção de um empréstimo em atraso: só o necessário para notificar o cliente,
+ * sem entidades gerenciadas pelo contexto de persistência.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OverdueLoan {
+    private Long loanId;
+    private String customer;
+    private Long bookId;
+    private String isbn;
+    private LocalDate loanDate;
+}
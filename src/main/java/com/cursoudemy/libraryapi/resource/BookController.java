@@ -1,19 +1,47 @@
 package com.cursoudemy.libraryapi.resource;
 
 import com.cursoudemy.libraryapi.api.exception.ApiErrors;
+import com.cursoudemy.libraryapi.config.WireFormatConfig;
+import com.cursoudemy.libraryapi.dto.BookAvailabilityDTO;
+import com.cursoudemy.libraryapi.dto.BookBatchResultDTO;
 import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.dto.BookPageDTO;
+import com.cursoudemy.libraryapi.dto.BookSearchResultDTO;
+import com.cursoudemy.libraryapi.dto.LoanPageDTO;
 import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.exception.ResourceNotFoundException;
+import com.cursoudemy.libraryapi.mapper.BookMapper;
 import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.BookAvailability;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
 import com.cursoudemy.libraryapi.service.BookService;
-import org.modelmapper.ModelMapper;
+import com.cursoudemy.libraryapi.service.LoanService;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Validator;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/books")
@@ -22,41 +50,345 @@ public class BookController {
     private BookService service;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private BookAvailabilityService availabilityService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private HttpMessageConverters messageConverters;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${library.books.batch.chunk-size:1000}")
+    private int batchChunkSize;
+
+    @Value("${library.books.export.page-size:500}")
+    private int exportPageSize;
+
+    @Value("${library.books.search.max-page-size:100}")
+    private int maxSearchPageSize;
+
+    @Value("${library.books.isbns.max-request-size:100000}")
+    private int maxIsbnsPerRequest;
+
+    @Value("${library.search.max-results:1000}")
+    private int maxSearchResults;
+
+    @Value("${library.loans.history.max-page-size:100}")
+    private int maxHistoryPageSize;
+
+    @Value("${library.books.cache-control:no-cache}")
+    private String cacheControl;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public BookDTO create(@RequestBody @Valid BookDTO dto){
-        Book entity = modelMapper.map(dto, Book.class);
+        Book entity = bookMapper.toEntity(dto);
         entity = service.save(entity);
-        return modelMapper.map(entity, BookDTO.class);
+        return bookMapper.toDto(entity);
     }
 
+    /**
+     * Busca por prefixo de título, autor e isbn com paginação por chave: o cliente
+     * envia em {@code after} o cursor {@code next} da página anterior. Os livros vêm
+     * ordenados pelo primeiro campo filtrado (título, autor, isbn) e depois pelo id, ou
+     * só pelo id sem filtro.
+     */
+    @GetMapping
+    public BookPageDTO find(@RequestParam(required = false) String title,
+                            @RequestParam(required = false) String author,
+                            @RequestParam(required = false) String isbn,
+                            @RequestParam(required = false) Long after,
+                            @RequestParam(defaultValue = "20") int size) {
+        if (size <= 0 || size > maxSearchPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Tamanho da página deve estar entre 1 e " + maxSearchPageSize + ".");
+        }
+        Book filter = Book.builder().title(title).author(author).isbn(isbn).build();
+        // um item a mais só para saber se existe próxima página
+        List<Book> books = service.find(filter, after, size + 1);
+        boolean hasNext = books.size() > size;
+        List<BookDTO> content = new ArrayList<>(Math.min(books.size(), size));
+        for (int i = 0; i < books.size() && i < size; i++) {
+            content.add(bookMapper.toDto(books.get(i)));
+        }
+        Long next = hasNext ? content.get(size - 1).getId() : null;
+        return new BookPageDTO(content, next);
+    }
+
+    /**
+     * Busca de texto completo em título e autor, com prefixos e erros de digitação,
+     * ordenada por relevância. Paginação por número de página até
+     * {@code library.search.max-results} resultados.
+     */
+    @GetMapping("search")
+    public BookSearchResultDTO search(@RequestParam String q,
+                                      @RequestParam(defaultValue = "0") int page,
+                                      @RequestParam(defaultValue = "20") int size) {
+        if (size <= 0 || size > maxSearchPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Tamanho da página deve estar entre 1 e " + maxSearchPageSize + ".");
+        }
+        if (page < 0 || (long) (page + 1) * size > maxSearchResults) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A busca retorna no máximo " + maxSearchResults + " resultados.");
+        }
+        Page<Book> books = service.search(q, page, size);
+        List<BookDTO> content = new ArrayList<>(books.getNumberOfElements());
+        books.forEach(book -> content.add(bookMapper.toDto(book)));
+        return new BookSearchResultDTO(content, page, size, books.getTotalElements());
+    }
+
+    /** Reconstrói o índice de busca a partir da base, em segundo plano. */
+    @PostMapping("search/reindex")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void reindex() {
+        service.reindex();
+    }
+
+    /**
+     * Importação em lote: aceita um array JSON ou NDJSON (um livro por linha), ou um array
+     * ou sequência de livros em Smile ou CBOR, e grava em blocos de
+     * {@code library.books.batch.chunk-size} livros, sem carregar o arquivo inteiro em memória.
+     */
+    @PostMapping(value = "batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            WireFormatConfig.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public BookBatchResultDTO createBatch(InputStream body, @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType)
+            throws IOException {
+        BookBatchResultDTO result = new BookBatchResultDTO();
+        List<Book> chunk = new ArrayList<>(batchChunkSize);
+        try (MappingIterator<BookDTO> dtos = batchMapper(contentType).readerFor(BookDTO.class).readValues(body)) {
+            while (dtos.hasNextValue()) {
+                BookDTO dto = dtos.nextValue();
+                result.setReceived(result.getReceived() + 1);
+                if (!validator.validate(dto).isEmpty()) {
+                    result.setInvalid(result.getInvalid() + 1);
+                    continue;
+                }
+                Book entity = bookMapper.toEntity(dto);
+                entity.setId(null);
+                chunk.add(entity);
+                if (chunk.size() == batchChunkSize) {
+                    saveChunk(chunk, result);
+                    chunk = new ArrayList<>(batchChunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, result);
+        }
+        return result;
+    }
+
+    // o mapper do conversor do Content-Type; NDJSON não tem conversor e é lido pelo mapper JSON
+    private ObjectMapper batchMapper(MediaType contentType) {
+        for (HttpMessageConverter<?> converter : messageConverters.getConverters()) {
+            if (converter instanceof AbstractJackson2HttpMessageConverter && converter.canRead(BookDTO.class, contentType)) {
+                return ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper();
+            }
+        }
+        return objectMapper;
+    }
+
+    private void saveChunk(List<Book> chunk, BookBatchResultDTO result) {
+        Set<Book> saved = Collections.newSetFromMap(new IdentityHashMap<>());
+        saved.addAll(service.saveAll(chunk));
+        result.setCreated(result.getCreated() + saved.size());
+        chunk.stream()
+                .filter(book -> !saved.contains(book))
+                .forEach(book -> result.getDuplicatedIsbns().add(book.getIsbn()));
+    }
+
+    /**
+     * Verificação em lote: recebe um array de isbns e devolve os que já estão cadastrados,
+     * com uma consulta por bloco em vez de uma por isbn.
+     */
+    @PostMapping("isbns/exists")
+    public Set<String> existingIsbns(@RequestBody List<String> isbns) {
+        if (isbns.size() > maxIsbnsPerRequest) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Informe no máximo " + maxIsbnsPerRequest + " isbns por requisição.");
+        }
+        return service.existingIsbns(isbns);
+    }
+
+    /**
+     * Exporta o catálogo inteiro em NDJSON ou CSV. Lê por paginação por chave e escreve
+     * cada página direto na resposta; a escrita bloqueia enquanto o cliente não consome
+     * o socket, então nunca há mais de uma página em memória.
+     */
+    @GetMapping("export")
+    public void export(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato de exportação não suportado.");
+        }
+        response.setContentType(csv ? "text/csv" : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        SequenceWriter ndjson = csv ? null : objectMapper.writerFor(BookDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(writer);
+        if (csv) {
+            writer.write("id,title,author,isbn\n");
+        }
+
+        Long lastId = null;
+        List<Book> page;
+        do {
+            page = service.getPageAfter(lastId, exportPageSize);
+            for (Book book : page) {
+                if (csv) {
+                    writeCsvLine(writer, book);
+                } else {
+                    ndjson.write(bookMapper.toDto(book));
+                }
+                lastId = book.getId();
+            }
+            // flush por página: bloqueia enquanto o cliente não consumir o que já foi enviado
+            if (ndjson != null) {
+                ndjson.flush();
+            }
+            writer.flush();
+        } while (page.size() == exportPageSize);
+
+        if (ndjson != null && lastId != null) {
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private static void writeCsvLine(Writer writer, Book book) throws IOException {
+        writer.write(String.valueOf(book.getId()));
+        writer.write(',');
+        writer.write(csvField(book.getTitle()));
+        writer.write(',');
+        writer.write(csvField(book.getAuthor()));
+        writer.write(',');
+        writer.write(csvField(book.getIsbn()));
+        writer.write('\n');
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Retorna o livro com a versão como ETag forte. Se o cliente já tem a versão atual
+     * ({@code If-None-Match}) responde 304 sem converter a entidade nem escrever corpo.
+     * Com {@code embed=availability} inclui a disponibilidade, e a ETag passa a cobrir
+     * também a versão dela.
+     */
     @GetMapping("{id}")
-    public BookDTO get(@PathVariable Long id){
-        return service
-                .getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
-                .orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    public BookDTO get(@PathVariable Long id,
+                       @RequestParam(required = false) String embed,
+                       ServletWebRequest request){
+        Book book = service.getById(id).orElseThrow(BookController::bookNotFound);
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (!"availability".equals(embed)) {
+            if (request.checkNotModified(etag(book))) {
+                return null;
+            }
+            return bookMapper.toDto(book);
+        }
+        BookAvailability availability = availabilityService.get(id);
+        if (request.checkNotModified(etag(book, availability))) {
+            return null;
+        }
+        BookDTO dto = bookMapper.toDto(book);
+        dto.setAvailability(toDto(availability));
+        return dto;
+    }
+
+    /** Empréstimos ativos e disponibilidade do livro, lidos da cópia em memória. */
+    @GetMapping("{id}/availability")
+    public BookAvailabilityDTO availability(@PathVariable Long id) {
+        service.getById(id).orElseThrow(BookController::bookNotFound);
+        return toDto(availabilityService.get(id));
+    }
+
+    /** Histórico de empréstimos do livro, paginado como em {@code GET /api/loans}. */
+    @GetMapping("{id}/loans")
+    public LoanPageDTO loans(@PathVariable Long id,
+                             @RequestParam(required = false) Long before,
+                             @RequestParam(defaultValue = "20") int size) {
+        LoanController.checkPageSize(size, maxHistoryPageSize);
+        List<LoanHistory> loans = loanService.findByBook(id, before, size + 1);
+        // empréstimos só existem para livros existentes (FK): só a página vazia precisa conferir o livro
+        if (loans.isEmpty()) {
+            service.getById(id).orElseThrow(BookController::bookNotFound);
+        }
+        return LoanController.page(loans, size);
+    }
+
+    private static BookAvailabilityDTO toDto(BookAvailability availability) {
+        return new BookAvailabilityDTO(availability.getBookId(), availability.getActiveLoans(), availability.isAvailable());
     }
 
     @DeleteMapping("{id}") @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteBook(@PathVariable Long id){
-       Book book = service.getById(id).orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+       Book book = service.getById(id).orElseThrow(BookController::bookNotFound);
        service.delete(book);
 
     }
+
+    /**
+     * Com {@code If-Match} a atualização só acontece se o cliente editou a versão atual;
+     * caso contrário responde 412. Atualizações concorrentes que passarem pela verificação
+     * são barradas pela coluna de versão e também resultam em 412.
+     */
     @PutMapping("{id}")
-    public BookDTO updateBook(@PathVariable Long id, @Valid @RequestBody BookDTO dto) {
-        return service.getById(id).map( book -> {
-            book.setAuthor(dto.getAuthor());
-            book.setTitle(dto.getTitle());
-            service.update(book);
-            return modelMapper.map(book, BookDTO.class);
-    }).orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    public BookDTO updateBook(@PathVariable Long id, @Valid @RequestBody BookDTO dto,
+                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                              HttpServletResponse response) {
+        Book book = service.getById(id).orElseThrow(BookController::bookNotFound);
+        if (ifMatch != null && !matches(ifMatch, etag(book))) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "O livro foi alterado por outra requisição.");
+        }
+        book.setAuthor(dto.getAuthor());
+        book.setTitle(dto.getTitle());
+        Book updated = service.update(book);
+        response.setHeader(HttpHeaders.ETAG, etag(updated));
+        return bookMapper.toDto(updated);
+    }
 
+    private static ResourceNotFoundException bookNotFound() {
+        return new ResourceNotFoundException("Livro não encontrado.");
+    }
 
+    static String etag(Book book) {
+        return "\"" + (book.getVersion() == null ? 0 : book.getVersion()) + "\"";
     }
 
+    static String etag(Book book, BookAvailability availability) {
+        return "\"" + (book.getVersion() == null ? 0 : book.getVersion())
+                + "-" + (availability.getVersion() == null ? 0 : availability.getVersion() + 1) + "\"";
+    }
 
+    /** Comparação forte do If-Match (RFC 7232): ETags fracas nunca casam. */
+    private static boolean matches(String ifMatch, String etag) {
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
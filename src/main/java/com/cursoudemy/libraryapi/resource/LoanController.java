@@ -1,11 +1,18 @@
 package com.cursoudemy.libraryapi.resource;
 
 import com.cursoudemy.libraryapi.dto.LoanDto;
+import com.cursoudemy.libraryapi.dto.LoanPageDTO;
+import com.cursoudemy.libraryapi.dto.LoanReturnDTO;
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO;
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.mapper.LoanMapper;
 import com.cursoudemy.libraryapi.model.entity.Book;
 import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
 import com.cursoudemy.libraryapi.service.BookService;
 import com.cursoudemy.libraryapi.service.LoanService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.apache.tomcat.jni.Local;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
@@ -14,6 +21,8 @@ import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -23,16 +32,63 @@ public class LoanController {
 
     private final LoanService loanService;
     private final BookService bookService;
+    private final LoanMapper loanMapper;
+
+    @Value("${library.loans.history.max-page-size:100}")
+    private int maxHistoryPageSize;
+
+    @Value("${library.loans.return.max-request-size:10000}")
+    private int maxReturnsPerRequest;
+
     @PostMapping @ResponseStatus(HttpStatus.CREATED)
     public Long createLoan(@RequestBody @Valid LoanDto loanDto){
        Book book =  bookService.getBookByIsbn(loanDto.getIsbn())
-               .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn."));
-       Loan loan = Loan.builder()
-               .book(book)
-               .loanDate(LocalDate.now())
-               .customer(loanDto.getCustomer())
-               .build();
+               .orElseThrow(() -> new BusinessException("Book not found for passed isbn."));
+       Loan loan = loanMapper.toEntity(loanDto, book, LocalDate.now());
        loan = loanService.save(loan);
        return loan.getId();
     }
+
+    /**
+     * Devolução em lote por ids de empréstimo e/ou isbns, com um resultado por item
+     * (devolvido, já devolvido ou não encontrado).
+     */
+    @PatchMapping("return")
+    public List<LoanReturnResultDTO> returnLoans(@RequestBody LoanReturnDTO dto) {
+        List<Long> ids = dto.getIds() == null ? Collections.emptyList() : dto.getIds();
+        List<String> isbns = dto.getIsbns() == null ? Collections.emptyList() : dto.getIsbns();
+        if (ids.size() + isbns.size() > maxReturnsPerRequest) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Informe no máximo " + maxReturnsPerRequest + " empréstimos por requisição.");
+        }
+        return loanService.returnLoans(ids, isbns);
+    }
+
+    /**
+     * Histórico de empréstimos do cliente, do mais recente para o mais antigo, com
+     * paginação por chave: o cliente envia em {@code before} o cursor {@code next}.
+     */
+    @GetMapping
+    public LoanPageDTO findByCustomer(@RequestParam String customer,
+                                      @RequestParam(required = false) Long before,
+                                      @RequestParam(defaultValue = "20") int size) {
+        checkPageSize(size, maxHistoryPageSize);
+        return page(loanService.findByCustomer(customer, before, size + 1), size);
+    }
+
+    static void checkPageSize(int size, int max) {
+        if (size <= 0 || size > max) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Tamanho da página deve estar entre 1 e " + max + ".");
+        }
+    }
+
+    /** Recebe um item a mais que {@code size}, só para saber se existe próxima página. */
+    static LoanPageDTO page(List<LoanHistory> loans, int size) {
+        if (loans.size() <= size) {
+            return new LoanPageDTO(loans, null);
+        }
+        List<LoanHistory> content = loans.subList(0, size);
+        return new LoanPageDTO(content, content.get(size - 1).getId());
+    }
 }
@@ -1,8 +1,13 @@
 package com.cursoudemy.libraryapi.service;
 
 import com.cursoudemy.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 public interface BookService {
     Book save(Book book);
@@ -15,4 +20,16 @@ public interface BookService {
     Book update(Book book);
 
     Optional<Book> getBookByIsbn(String isbn);
+
+    List<Book> saveAll(Collection<Book> books);
+
+    List<Book> getPageAfter(Long lastId, int size);
+
+    List<Book> find(Book filter, Long afterId, int size);
+
+    Set<String> existingIsbns(Collection<String> isbns);
+
+    Page<Book> search(String text, int page, int size);
+
+    Future<Long> reindex();
 }
@@ -1,7 +1,22 @@
 package com.cursoudemy.libraryapi.service;
 
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO;
 import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
+
+import java.util.List;
 
 public interface LoanService {
     Loan save(Loan loan);
+
+    /** Até {@code limit} empréstimos do cliente com id menor que {@code before} (nulo: do mais recente). */
+    List<LoanHistory> findByCustomer(String customer, Long before, int limit);
+
+    List<LoanHistory> findByBook(Long bookId, Long before, int limit);
+
+    /**
+     * Devolve os empréstimos pelos ids e pelos isbns dos livros emprestados, com um único
+     * update por bloco. Devolve um resultado por item, na ordem recebida (ids, depois isbns).
+     */
+    List<LoanReturnResultDTO> returnLoans(List<Long> ids, List<String> isbns);
 }
@@ -0,0 +1,128 @@
+package com.cursoudemy.libraryapi.service.availability;
+
+import com.cursoudemy.libraryapi.model.entity.BookAvailability;
+import com.cursoudemy.libraryapi.model.entity.repository.BookAvailabilityRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Contadores de empréstimos ativos por livro. A tabela {@link BookAvailability} é
+ * atualizada na transação do empréstimo; uma cópia em memória, carregada na subida e
+ * atualizada depois de cada commit, responde às consultas sem ir ao banco.
+ * Enquanto a cópia não termina de carregar as consultas caem na base.
+ */
+@Service
+public class BookAvailabilityService {
+
+    private final BookAvailabilityRepository repository;
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public BookAvailabilityService(BookAvailabilityRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional
+    public void loanCreated(Long bookId) {
+        change(bookId, 1);
+    }
+
+    @Transactional
+    public void loanReturned(Long bookId) {
+        change(bookId, -1);
+    }
+
+    /** Devolução em lote: um empréstimo a menos para cada livro, sem ler e gravar livro a livro. */
+    @Transactional
+    public void loansReturned(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        repository.decrementActiveLoans(bookIds);
+        repository.markAvailable(bookIds);
+        List<BookAvailability> updated = repository.findAllById(bookIds);
+        afterCommit(() -> updated.forEach(this::remember));
+    }
+
+    /**
+     * Disponibilidade pela cópia em memória; {@code null} se ela ainda não foi carregada
+     * e a resposta precisa vir da base.
+     */
+    public Boolean isAvailable(Long bookId) {
+        if (!loaded) {
+            return null;
+        }
+        Snapshot snapshot = snapshots.get(bookId);
+        return snapshot == null || snapshot.activeLoans == 0;
+    }
+
+    public BookAvailability get(Long bookId) {
+        if (!loaded) {
+            return repository.findById(bookId).orElseGet(() -> neverLoaned(bookId));
+        }
+        Snapshot snapshot = snapshots.get(bookId);
+        if (snapshot == null) {
+            return neverLoaned(bookId);
+        }
+        return new BookAvailability(bookId, snapshot.activeLoans, snapshot.activeLoans == 0, snapshot.version);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        try (Stream<BookAvailability> all = repository.streamAll()) {
+            all.forEach(this::remember);
+        }
+        loaded = true;
+    }
+
+    private void change(Long bookId, int delta) {
+        BookAvailability availability = repository.findForUpdate(bookId)
+                .orElseGet(() -> neverLoaned(bookId));
+        availability.setActiveLoans(Math.max(0, availability.getActiveLoans() + delta));
+        availability.setAvailable(availability.getActiveLoans() == 0);
+        BookAvailability saved = repository.saveAndFlush(availability);
+        afterCommit(() -> remember(saved));
+    }
+
+    // commits do mesmo livro podem chegar fora de ordem: fica a versão maior
+    private void remember(BookAvailability availability) {
+        Snapshot snapshot = new Snapshot(availability.getActiveLoans(), availability.getVersion());
+        snapshots.merge(availability.getBookId(), snapshot,
+                (current, candidate) -> candidate.version > current.version ? candidate : current);
+    }
+
+    private static BookAvailability neverLoaned(Long bookId) {
+        return BookAvailability.builder().bookId(bookId).build();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Snapshot {
+        private final int activeLoans;
+        private final long version;
+    }
+}
@@ -0,0 +1,64 @@
+package com.cursoudemy.libraryapi.service.cache;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache LRU em memória de livros indexados pelo isbn.
+ * Guarda cópias das entidades para que alterações feitas por quem consulta
+ * não vazem para o cache; o índice reverso por id permite invalidar a entrada
+ * mesmo quando o isbn do livro muda.
+ */
+public class BookIsbnCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<String, Book> byIsbn;
+    private final Map<Long, String> isbnById = new HashMap<>();
+
+    public BookIsbnCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Tamanho máximo deve ser positivo");
+        }
+        this.maxSize = maxSize;
+        this.byIsbn = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public synchronized Optional<Book> get(String isbn) {
+        Book book = byIsbn.get(isbn);
+        return book == null ? Optional.empty() : Optional.of(book.toBuilder().build());
+    }
+
+    public synchronized void put(Book book) {
+        if (book == null || book.getId() == null || book.getIsbn() == null) {
+            return;
+        }
+        evict(book.getId());
+        byIsbn.put(book.getIsbn(), book.toBuilder().build());
+        isbnById.put(book.getId(), book.getIsbn());
+        if (byIsbn.size() > maxSize) {
+            Map.Entry<String, Book> eldest = byIsbn.entrySet().iterator().next();
+            byIsbn.remove(eldest.getKey());
+            isbnById.remove(eldest.getValue().getId());
+        }
+    }
+
+    public synchronized void evict(Long id) {
+        String isbn = isbnById.remove(id);
+        if (isbn != null) {
+            byIsbn.remove(isbn);
+        }
+    }
+
+    public synchronized void clear() {
+        byIsbn.clear();
+        isbnById.clear();
+    }
+
+    public synchronized int size() {
+        return byIsbn.size();
+    }
+}
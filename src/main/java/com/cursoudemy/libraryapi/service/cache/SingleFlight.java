@@ -0,0 +1,79 @@
+package com.cursoudemy.libraryapi.service.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Agrupa leituras simultâneas da mesma chave: a primeira executa a consulta e as que
+ * chegam enquanto ela está em andamento esperam e recebem o mesmo resultado, cada uma
+ * com a sua cópia ({@code copy}), para que alterações de quem consultou não vazem para
+ * as demais. Nada fica guardado depois da consulta: isto não é cache.
+ * Só há entradas para consultas em andamento; acima de {@code maxKeys} chaves
+ * simultâneas as consultas seguem sem agrupamento.
+ */
+public class SingleFlight<K, V> {
+
+    private final int maxKeys;
+    private final UnaryOperator<V> copy;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlight(int maxKeys, UnaryOperator<V> copy) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("Quantidade máxima de chaves deve ser positiva");
+        }
+        this.maxKeys = maxKeys;
+        this.copy = copy;
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> running = inFlight.get(key);
+        if (running == null) {
+            if (inFlight.size() >= maxKeys) {
+                return loader.get();
+            }
+            CompletableFuture<V> execution = new CompletableFuture<>();
+            running = inFlight.putIfAbsent(key, execution);
+            if (running == null) {
+                return execute(key, execution, loader);
+            }
+        }
+        coalesced.increment();
+        try {
+            return copy.apply(running.join());
+        } catch (CompletionException e) {
+            // a exceção da consulta original, sem o embrulho do CompletableFuture
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /** Leituras que receberam o resultado de uma consulta já em andamento. */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    private V execute(K key, CompletableFuture<V> execution, Supplier<V> loader) {
+        try {
+            V value = loader.get();
+            // quem esperava copia de um retrato, não do objeto que a primeira leitura pode alterar
+            execution.complete(copy.apply(value));
+            return value;
+        } catch (RuntimeException | Error e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.cursoudemy.libraryapi.service.idempotency;
+
+import java.util.Optional;
+
+/**
+ * Respostas já produzidas, por Idempotency-Key, até expirarem. Antes de executar, quem
+ * recebe a chave a reserva com {@link #claim}; a reserva termina com {@link #save} ou,
+ * se não houver resposta a guardar, com {@link #release}.
+ */
+public interface IdempotencyStore {
+
+    Optional<IdempotentResponse> find(String key);
+
+    /** Reserva a chave; {@code false} se ela já tem resposta ou outra execução em andamento. */
+    boolean claim(String key, String fingerprint);
+
+    void save(String key, IdempotentResponse response);
+
+    /** Desfaz a reserva sem gravar resposta, para que a chave possa ser executada de novo. */
+    void release(String key);
+}
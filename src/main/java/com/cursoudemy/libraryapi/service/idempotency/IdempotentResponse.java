@@ -0,0 +1,20 @@
+package com.cursoudemy.libraryapi.service.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Resposta gravada para uma Idempotency-Key. {@code fingerprint} é o hash do corpo da
+ * requisição original: a mesma chave com outro corpo não é repetição, é erro do cliente.
+ */
+@Getter
+@AllArgsConstructor
+public class IdempotentResponse {
+    private final String fingerprint;
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+    private final Instant createdAt;
+}
@@ -0,0 +1,67 @@
+package com.cursoudemy.libraryapi.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Store em memória, limitado a {@code maxEntries} chaves (as menos usadas saem
+ * primeiro) e com expiração {@code ttl} depois da gravação. Vale só para esta
+ * instância e se perde ao reiniciar; com várias instâncias use o store na base.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotentResponse> responses;
+    private final ConcurrentMap<String, String> claims = new ConcurrentHashMap<>();
+
+    public InMemoryIdempotencyStore(long maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Ticker.systemTicker());
+    }
+
+    InMemoryIdempotencyStore(long maxEntries, Duration ttl, Ticker ticker) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotentResponse> find(String key) {
+        return Optional.ofNullable(responses.getIfPresent(key));
+    }
+
+    @Override
+    public boolean claim(String key, String fingerprint) {
+        if (claims.putIfAbsent(key, fingerprint) != null) {
+            return false;
+        }
+        // a resposta é gravada antes de a reserva sair: conferida depois da reserva, não escapa
+        if (responses.getIfPresent(key) != null) {
+            claims.remove(key, fingerprint);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void save(String key, IdempotentResponse response) {
+        responses.put(key, response);
+        claims.remove(key);
+    }
+
+    @Override
+    public void release(String key) {
+        claims.remove(key);
+    }
+
+    long size() {
+        responses.cleanUp();
+        return responses.estimatedSize();
+    }
+}
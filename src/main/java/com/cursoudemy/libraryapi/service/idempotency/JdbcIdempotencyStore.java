@@ -0,0 +1,104 @@
+package com.cursoudemy.libraryapi.service.idempotency;
+
+import com.cursoudemy.libraryapi.model.entity.IdempotencyRecord;
+import com.cursoudemy.libraryapi.model.entity.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Store na base: sobrevive a reinícios e é compartilhado entre instâncias. A reserva
+ * da chave é um insert de um registro pendente ({@code status = 0}) antes da execução,
+ * então a chave primária garante que só uma instância executa; a reserva de uma
+ * instância que caiu no meio é assumida depois de {@code claimTimeout}. Registros
+ * vencidos são ignorados na leitura e apagados periodicamente. Respostas acima de
+ * {@link IdempotencyRecord#MAX_BODY_BYTES} não são gravadas.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotencyStore.class);
+
+    private static final int PENDING = 0;
+    // insert direto: o save do repositório faria um merge, que não falha com a chave já reservada
+    private static final String INSERT_CLAIM = "insert into idempotency_record "
+            + "(idempotency_key, fingerprint, status, created_at) values (?, ?, " + PENDING + ", ?)";
+
+    private final IdempotencyRecordRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Duration claimTimeout;
+    private final Clock clock;
+
+    public JdbcIdempotencyStore(IdempotencyRecordRepository repository, JdbcTemplate jdbcTemplate,
+                                Duration ttl, Duration claimTimeout) {
+        this(repository, jdbcTemplate, ttl, claimTimeout, Clock.systemUTC());
+    }
+
+    JdbcIdempotencyStore(IdempotencyRecordRepository repository, JdbcTemplate jdbcTemplate,
+                         Duration ttl, Duration claimTimeout, Clock clock) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.claimTimeout = claimTimeout;
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<IdempotentResponse> find(String key) {
+        Instant cutoff = clock.instant().minus(ttl);
+        return repository.findById(key)
+                .filter(record -> record.getStatus() != PENDING && record.getCreatedAt().isAfter(cutoff))
+                .map(record -> new IdempotentResponse(record.getFingerprint(), record.getStatus(),
+                        record.getContentType(), record.getBody(), record.getCreatedAt()));
+    }
+
+    @Override
+    public boolean claim(String key, String fingerprint) {
+        Instant now = clock.instant();
+        try {
+            jdbcTemplate.update(INSERT_CLAIM, key, fingerprint, Timestamp.from(now));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return repository.takeOver(key, fingerprint, now, now.minus(claimTimeout), now.minus(ttl)) == 1;
+        }
+    }
+
+    @Override
+    public void save(String key, IdempotentResponse response) {
+        if (response.getBody() != null && response.getBody().length > IdempotencyRecord.MAX_BODY_BYTES) {
+            log.warn("Resposta de {} bytes não gravada para a Idempotency-Key {}", response.getBody().length, key);
+            release(key);
+            return;
+        }
+        repository.save(IdempotencyRecord.builder()
+                .key(key)
+                .fingerprint(response.getFingerprint())
+                .status(response.getStatus())
+                .contentType(response.getContentType())
+                .body(response.getBody())
+                .createdAt(response.getCreatedAt())
+                .build());
+    }
+
+    @Override
+    public void release(String key) {
+        repository.deleteClaim(key);
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.purge-interval:PT10M}")
+    public int purgeExpired() {
+        int deleted = repository.deleteCreatedBefore(clock.instant().minus(ttl));
+        if (deleted > 0) {
+            log.info("{} Idempotency-Keys vencidas removidas", deleted);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,63 @@
+package com.cursoudemy.libraryapi.service.overdue;
+
+import com.cursoudemy.libraryapi.model.entity.repository.OverdueLoan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Notificador local: acrescenta uma linha CSV por empréstimo em
+ * {@code library.loans.overdue.output-file} ou, sem arquivo configurado, registra no log.
+ * Para outro destino basta declarar um {@link OverdueLoanNotifier} marcado com {@code @Primary}.
+ */
+@Component
+public class LocalOverdueLoanNotifier implements OverdueLoanNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalOverdueLoanNotifier.class);
+
+    private final Path outputFile;
+
+    public LocalOverdueLoanNotifier(@Value("${library.loans.overdue.output-file:}") String outputFile) {
+        this.outputFile = outputFile.isEmpty() ? null : Paths.get(outputFile);
+    }
+
+    @Override
+    public void notify(List<OverdueLoan> loans) throws IOException {
+        if (outputFile == null) {
+            loans.forEach(loan -> log.info("Empréstimo {} em atraso desde {}: cliente {}, isbn {}",
+                    loan.getLoanId(), loan.getLoanDate(), loan.getCustomer(), loan.getIsbn()));
+            return;
+        }
+        if (outputFile.getParent() != null) {
+            Files.createDirectories(outputFile.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (OverdueLoan loan : loans) {
+                writer.write(loan.getLoanId() + "," + loan.getLoanDate() + "," + loan.getBookId() + ","
+                        + csvField(loan.getIsbn()) + "," + csvField(loan.getCustomer()));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,134 @@
+package com.cursoudemy.libraryapi.service.overdue;
+
+import com.cursoudemy.libraryapi.model.entity.JobCheckpoint;
+import com.cursoudemy.libraryapi.model.entity.repository.JobCheckpointRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.OverdueLoan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Job de empréstimos em atraso: não devolvidos e feitos há mais de
+ * {@code library.loans.overdue.due-days} dias.
+ * <p>
+ * Lê em lotes de {@code chunk-size} por paginação por chave em (data, id), então a
+ * memória usada não depende de quantos empréstimos existem. Depois de notificar cada
+ * lote o cursor é gravado em {@link JobCheckpoint}: uma execução interrompida (queda
+ * ou {@code max-runtime} esgotado) é retomada do mesmo ponto e com a mesma data de
+ * corte na execução seguinte. A entrega é ao menos uma vez: um lote notificado antes
+ * da queda e sem checkpoint é notificado de novo.
+ */
+@Component
+public class OverdueLoanJob {
+
+    static final String JOB_NAME = "overdue-loans";
+    // início do cursor: antes de qualquer empréstimo
+    private static final LocalDate FIRST_DATE = LocalDate.of(1900, 1, 1);
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueLoanJob.class);
+
+    private final LoanRepository loanRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final OverdueLoanNotifier notifier;
+    private final int dueDays;
+    private final int chunkSize;
+    private final Duration maxRuntime;
+    private final Clock clock;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public OverdueLoanJob(LoanRepository loanRepository,
+                          JobCheckpointRepository checkpointRepository,
+                          OverdueLoanNotifier notifier,
+                          @Value("${library.loans.overdue.due-days:14}") int dueDays,
+                          @Value("${library.loans.overdue.chunk-size:1000}") int chunkSize,
+                          @Value("${library.loans.overdue.max-runtime:10m}") Duration maxRuntime) {
+        this(loanRepository, checkpointRepository, notifier, dueDays, chunkSize, maxRuntime, Clock.systemDefaultZone());
+    }
+
+    public OverdueLoanJob(LoanRepository loanRepository,
+                          JobCheckpointRepository checkpointRepository,
+                          OverdueLoanNotifier notifier,
+                          int dueDays, int chunkSize, Duration maxRuntime, Clock clock) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Tamanho do lote deve ser positivo");
+        }
+        this.loanRepository = loanRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.notifier = notifier;
+        this.dueDays = dueDays;
+        this.chunkSize = chunkSize;
+        this.maxRuntime = maxRuntime;
+        this.clock = clock;
+    }
+
+    @Scheduled(cron = "${library.loans.overdue.cron:0 0 2 * * *}")
+    public void scheduledRun() throws Exception {
+        run();
+    }
+
+    /**
+     * Executa (ou retoma) a varredura e devolve quantos empréstimos foram notificados.
+     * Execuções simultâneas nesta instância são ignoradas.
+     */
+    public long run() throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Job {} já está em execução", JOB_NAME);
+            return 0;
+        }
+        try {
+            JobCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME)
+                    .filter(saved -> !saved.isFinished())
+                    .orElseGet(this::newRun);
+            long deadline = System.nanoTime() + maxRuntime.toNanos();
+            long notified = 0;
+            while (true) {
+                List<OverdueLoan> chunk = loanRepository.findOverdueAfter(checkpoint.getCutoff(),
+                        checkpoint.getLastDate(), checkpoint.getLastId(), PageRequest.of(0, chunkSize));
+                if (!chunk.isEmpty()) {
+                    notifier.notify(chunk);
+                    OverdueLoan last = chunk.get(chunk.size() - 1);
+                    checkpoint.setLastDate(last.getLoanDate());
+                    checkpoint.setLastId(last.getLoanId());
+                    checkpoint.setProcessed(checkpoint.getProcessed() + chunk.size());
+                    notified += chunk.size();
+                }
+                checkpoint.setFinished(chunk.size() < chunkSize);
+                checkpoint.setUpdatedAt(Instant.now(clock));
+                checkpoint = checkpointRepository.save(checkpoint);
+                if (checkpoint.isFinished()) {
+                    log.info("Job {} concluído: {} empréstimos em atraso", JOB_NAME, checkpoint.getProcessed());
+                    break;
+                }
+                if (System.nanoTime() > deadline) {
+                    log.warn("Job {} interrompido após {}; será retomado na próxima execução", JOB_NAME, maxRuntime);
+                    break;
+                }
+            }
+            return notified;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private JobCheckpoint newRun() {
+        return JobCheckpoint.builder()
+                .name(JOB_NAME)
+                .cutoff(LocalDate.now(clock).minusDays(dueDays))
+                .lastDate(FIRST_DATE)
+                .lastId(0L)
+                .build();
+    }
+}
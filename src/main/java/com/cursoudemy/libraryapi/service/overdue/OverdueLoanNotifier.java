@@ -0,0 +1,15 @@
+package com.cursoudemy.libraryapi.service.overdue;
+
+import com.cursoudemy.libraryapi.model.entity.repository.OverdueLoan;
+
+import java.util.List;
+
+/**
+ * Destino das notificações de empréstimos em atraso (e-mail, fila, arquivo...).
+ * Recebe um lote por vez; o mesmo lote pode ser entregue de novo se o job cair
+ * antes de registrar o progresso, então a implementação deve tolerar repetições.
+ */
+public interface OverdueLoanNotifier {
+
+    void notify(List<OverdueLoan> loans) throws Exception;
+}
@@ -0,0 +1,65 @@
+package com.cursoudemy.libraryapi.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limite de requisições por cliente em token bucket, na forma de GCRA: cada cliente
+ * guarda só o instante teórico da próxima requisição, um {@link AtomicLong} atualizado
+ * com CAS, sem locks. O cliente pode fazer {@code burst} requisições de uma vez e depois
+ * {@code ratePerSecond} por segundo.
+ * Os clientes ficam num cache limitado a {@code maxClients} e saem dele assim que o
+ * balde enche de novo, quando não há mais nada a lembrar sobre eles.
+ */
+public class ClientRateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Ticker ticker;
+    private final Cache<String, AtomicLong> buckets;
+
+    public ClientRateLimiter(double ratePerSecond, int burst, long maxClients) {
+        this(ratePerSecond, burst, maxClients, Ticker.systemTicker());
+    }
+
+    ClientRateLimiter(double ratePerSecond, int burst, long maxClients, Ticker ticker) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Taxa e rajada devem ser positivas");
+        }
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(emissionIntervalNanos + burstToleranceNanos))
+                .ticker(ticker)
+                .build();
+    }
+
+    /** 0 se a requisição pode seguir; senão, quantos nanossegundos o cliente deve esperar. */
+    public long tryAcquire(String client) {
+        long now = ticker.read();
+        AtomicLong bucket = buckets.get(client, c -> new AtomicLong(now));
+        while (true) {
+            long theoreticalArrival = bucket.get();
+            long start = Math.max(theoreticalArrival, now);
+            long wait = start - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(theoreticalArrival, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    long clients() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,97 @@
+package com.cursoudemy.libraryapi.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Descarte de carga: recusa requisições enquanto a aplicação já está no limite, antes
+ * que elas ocupem uma thread esperando conexão. Dois sinais: requisições em andamento
+ * acima de {@code maxInFlight} e espera média por conexão do pool na última janela
+ * ({@code window}) acima de {@code maxPoolWait}.
+ * Uma janela sem nenhuma conexão obtida zera a espera, para que o descarte termine
+ * quando as requisições recusadas deixam de chegar ao pool.
+ */
+public class LoadShedder {
+
+    public enum Decision { ACCEPTED, IN_FLIGHT, POOL_WAIT }
+
+    private final int maxInFlight;
+    private final long maxPoolWaitNanos;
+    private final long windowNanos;
+    private final Supplier<Timer> poolAcquire;
+    private final Ticker ticker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastSample;
+    private volatile long sampledCount;
+    private volatile double sampledTotalNanos;
+    private volatile long recentPoolWaitNanos;
+
+    /**
+     * @param poolAcquire timer do tempo para obter conexão ({@code hikaricp.connections.acquire});
+     *                    pode devolver {@code null} enquanto o pool não existir
+     */
+    public LoadShedder(int maxInFlight, Duration maxPoolWait, Duration window, Supplier<Timer> poolAcquire) {
+        this(maxInFlight, maxPoolWait, window, poolAcquire, Ticker.systemTicker());
+    }
+
+    LoadShedder(int maxInFlight, Duration maxPoolWait, Duration window, Supplier<Timer> poolAcquire, Ticker ticker) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Quantidade máxima de requisições deve ser positiva");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxPoolWaitNanos = maxPoolWait.toNanos();
+        this.windowNanos = window.toNanos();
+        this.poolAcquire = poolAcquire;
+        this.ticker = ticker;
+        this.lastSample = new AtomicLong(ticker.read());
+    }
+
+    /** Com {@link Decision#ACCEPTED} a requisição entra e deve chamar {@link #exit()} ao terminar. */
+    public Decision tryEnter() {
+        if (poolWaitExceeded()) {
+            return Decision.POOL_WAIT;
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            return Decision.IN_FLIGHT;
+        }
+        return Decision.ACCEPTED;
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private boolean poolWaitExceeded() {
+        long now = ticker.read();
+        long last = lastSample.get();
+        // uma thread por janela lê o timer; as demais usam o último valor
+        if (now - last >= windowNanos && lastSample.compareAndSet(last, now)) {
+            sample();
+        }
+        return recentPoolWaitNanos > maxPoolWaitNanos;
+    }
+
+    private void sample() {
+        Timer timer = poolAcquire.get();
+        if (timer == null) {
+            return;
+        }
+        long count = timer.count();
+        double totalNanos = timer.totalTime(TimeUnit.NANOSECONDS);
+        long acquired = count - sampledCount;
+        recentPoolWaitNanos = acquired > 0 ? (long) ((totalNanos - sampledTotalNanos) / acquired) : 0;
+        sampledCount = count;
+        sampledTotalNanos = totalNanos;
+    }
+}
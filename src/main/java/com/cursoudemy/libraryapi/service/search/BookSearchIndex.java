@@ -0,0 +1,303 @@
+package com.cursoudemy.libraryapi.service.search;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+/**
+ * Índice de texto completo (Lucene) de títulos e autores.
+ * As alterações são aplicadas por uma única thread, na ordem em que chegam, para não
+ * pesar na latência de escrita; as buscas enxergam o índice depois do próximo refresh.
+ * O índice guarda só o id: os livros encontrados são lidos da base, que continua sendo
+ * a fonte da verdade.
+ * Com {@code library.search.index-dir} vazio o índice fica em memória. A fila de
+ * alterações é limitada por {@code library.search.queue-capacity}: cheia, quem
+ * grava espera a vez, mantendo a ordem das alterações.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String AUTHOR = "author";
+    private static final float TITLE_BOOST = 2f;
+    private static final float AUTHOR_BOOST = 1f;
+
+    private final Analyzer analyzer = new FoldingAnalyzer();
+    private final Path indexPath;
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ThreadPoolExecutor indexer;
+
+    public BookSearchIndex(String indexDir) throws IOException {
+        this(indexDir, 10000);
+    }
+
+    @Autowired
+    public BookSearchIndex(@Value("${library.search.index-dir:}") String indexDir,
+                           @Value("${library.search.queue-capacity:10000}") int queueCapacity) throws IOException {
+        this.indexPath = indexDir.isEmpty() ? null : Paths.get(indexDir);
+        this.directory = indexPath == null ? new ByteBuffersDirectory() : FSDirectory.open(indexPath);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+        this.indexer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "book-search-indexer");
+            thread.setDaemon(true);
+            return thread;
+        }, BookSearchIndex::waitForRoom);
+    }
+
+    // fila cheia: o chamador espera em vez de rodar a tarefa ele mesmo, o que inverteria a ordem
+    private static void waitForRoom(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Índice de busca encerrado");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrompido esperando a fila do índice de busca", e);
+        }
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        Document document = toDocument(book);
+        submit(() -> writer.updateDocument(new Term(ID, document.get(ID)), document));
+    }
+
+    public void remove(Long id) {
+        if (id == null) {
+            return;
+        }
+        submit(() -> writer.deleteDocuments(new Term(ID, String.valueOf(id))));
+    }
+
+    /**
+     * Reindexa o catálogo inteiro. {@code pages} devolve a página seguinte ao último id
+     * recebido (nulo na primeira chamada) e uma lista vazia no fim. Roda na mesma fila das
+     * alterações, então o que for gravado durante a reconstrução é aplicado depois dela.
+     * O índice novo é montado à parte e só substitui o atual no fim: se a leitura das
+     * páginas falhar, o índice atual fica como estava.
+     */
+    public Future<Long> rebuild(BiFunction<Long, Integer, List<Book>> pages, int pageSize) {
+        return indexer.submit(() -> {
+            Path stagingPath = indexPath == null ? null
+                    : Files.createTempDirectory(indexPath.toAbsolutePath().getParent(), "rebuild-");
+            try (Directory staging = stagingPath == null ? new ByteBuffersDirectory() : FSDirectory.open(stagingPath)) {
+                long count = 0;
+                try (IndexWriter staged = new IndexWriter(staging, new IndexWriterConfig(analyzer))) {
+                    Long lastId = null;
+                    List<Book> page;
+                    do {
+                        page = pages.apply(lastId, pageSize);
+                        for (Book book : page) {
+                            staged.addDocument(toDocument(book));
+                            lastId = book.getId();
+                        }
+                        count += page.size();
+                    } while (page.size() == pageSize);
+                }
+                writer.deleteAll();
+                writer.addIndexes(staging);
+                publish();
+                log.info("Índice de busca reconstruído com {} livros", count);
+                return count;
+            } finally {
+                if (stagingPath != null) {
+                    FileSystemUtils.deleteRecursively(stagingPath);
+                }
+            }
+        });
+    }
+
+    /** Espera as alterações já enfileiradas ficarem visíveis nas buscas. */
+    public void awaitPending(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        indexer.submit(this::publish).get(timeout, unit);
+    }
+
+    public int size() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Busca por relevância: cada termo precisa aparecer no título ou no autor, seja
+     * inteiro, como prefixo ou com erro de digitação. Título pesa mais que autor e o
+     * termo exato mais que prefixo e aproximação.
+     */
+    public Hits search(String text, int page, int size) {
+        Query query = buildQuery(text);
+        if (query == null) {
+            return new Hits(new ArrayList<>(), 0);
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int from = page * size;
+                TopDocs top = searcher.search(query, from + size);
+                List<Long> ids = new ArrayList<>(size);
+                for (int i = from; i < top.scoreDocs.length; i++) {
+                    ids.add(Long.valueOf(searcher.doc(top.scoreDocs[i].doc).get(ID)));
+                }
+                return new Hits(ids, top.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Query buildQuery(String text) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+            addTermQueries(anyField, TITLE, term, TITLE_BOOST);
+            addTermQueries(anyField, AUTHOR, term, AUTHOR_BOOST);
+            query.add(anyField.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private static void addTermQueries(BooleanQuery.Builder builder, String field, String text, float boost) {
+        Term term = new Term(field, text);
+        builder.add(new BoostQuery(new TermQuery(term), 3 * boost), BooleanClause.Occur.SHOULD);
+        builder.add(new BoostQuery(new PrefixQuery(term), 1.5f * boost), BooleanClause.Occur.SHOULD);
+        if (text.length() >= 4) {
+            int maxEdits = text.length() >= 8 ? 2 : 1;
+            builder.add(new BoostQuery(new FuzzyQuery(term, maxEdits, 1), boost), BooleanClause.Occur.SHOULD);
+        }
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(TITLE, text)) {
+            CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(attribute.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static Document toDocument(Book book) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(book.getId()), Field.Store.YES));
+        if (book.getTitle() != null) {
+            document.add(new TextField(TITLE, book.getTitle(), Field.Store.NO));
+        }
+        if (book.getAuthor() != null) {
+            document.add(new TextField(AUTHOR, book.getAuthor(), Field.Store.NO));
+        }
+        return document;
+    }
+
+    private void submit(IndexOperation operation) {
+        indexer.execute(() -> {
+            try {
+                operation.run();
+                // commit e refresh só quando a fila esvazia: rajadas de escrita viram um único commit
+                if (indexer.getQueue().isEmpty()) {
+                    publish();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Falha ao atualizar o índice de busca", e);
+            }
+        });
+    }
+
+    private Void publish() throws IOException {
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+        return null;
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        indexer.shutdown();
+        indexer.awaitTermination(30, TimeUnit.SECONDS);
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Hits {
+        private final List<Long> ids;
+        private final long total;
+    }
+
+    @FunctionalInterface
+    private interface IndexOperation {
+        void run() throws IOException;
+    }
+
+    // minúsculas e sem acentos: "Memórias" encontra "memorias"
+    private static class FoldingAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new LowerCaseFilter(tokenizer);
+            stream = new ASCIIFoldingFilter(stream);
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    }
+}
@@ -3,32 +3,135 @@ package com.cursoudemy.libraryapi.service.service.impl;
 import com.cursoudemy.libraryapi.exception.BusinessException;
 import com.cursoudemy.libraryapi.model.entity.Book;
 import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.BookSpecifications;
 import com.cursoudemy.libraryapi.service.BookService;
+import com.cursoudemy.libraryapi.service.cache.BookIsbnCache;
+import com.cursoudemy.libraryapi.service.cache.IsbnBloomFilter;
+import com.cursoudemy.libraryapi.service.cache.SingleFlight;
+import com.cursoudemy.libraryapi.service.search.BookSearchIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Optional;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class BookServiceImp implements BookService {
 
+    static final int DEFAULT_ISBN_CACHE_SIZE = 10_000;
+    static final int DEFAULT_SINGLE_FLIGHT_MAX_KEYS = 10_000;
+    static final String COALESCED_READS_METRIC = "library.books.reads.coalesced";
+    // limite de parâmetros por IN; listas maiores viram várias consultas
+    static final int ISBN_QUERY_CHUNK = 1000;
+    private static final long MIN_ISBN_FILTER_CAPACITY = 100_000;
+    private static final int REINDEX_PAGE_SIZE = 1000;
+
     public BookServiceImp(BookRepository repository) {
+        this(repository, DEFAULT_ISBN_CACHE_SIZE, null);
+    }
+
+    public BookServiceImp(BookRepository repository, int isbnCacheSize, BookSearchIndex searchIndex) {
+        this(repository, isbnCacheSize, searchIndex, DEFAULT_SINGLE_FLIGHT_MAX_KEYS, null);
+    }
+
+    @Autowired
+    public BookServiceImp(BookRepository repository,
+                          @Value("${library.books.isbn-cache-size:" + DEFAULT_ISBN_CACHE_SIZE + "}") int isbnCacheSize,
+                          BookSearchIndex searchIndex,
+                          @Value("${library.books.single-flight.max-keys:" + DEFAULT_SINGLE_FLIGHT_MAX_KEYS + "}") int singleFlightMaxKeys,
+                          @Nullable MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.isbnCache = new BookIsbnCache(isbnCacheSize);
+        this.searchIndex = searchIndex;
+        this.readsById = new SingleFlight<>(singleFlightMaxKeys, BookServiceImp::copy);
+        this.readsByIsbn = new SingleFlight<>(singleFlightMaxKeys, BookServiceImp::copy);
+        if (meterRegistry != null) {
+            FunctionCounter.builder(COALESCED_READS_METRIC, readsById, SingleFlight::coalescedCount)
+                    .tag("lookup", "id")
+                    .description("Leituras atendidas por uma consulta já em andamento")
+                    .register(meterRegistry);
+            FunctionCounter.builder(COALESCED_READS_METRIC, readsByIsbn, SingleFlight::coalescedCount)
+                    .tag("lookup", "isbn")
+                    .description("Leituras atendidas por uma consulta já em andamento")
+                    .register(meterRegistry);
+        }
     }
 
     private BookRepository repository;
 
+    private final BookIsbnCache isbnCache;
+
+    // leituras simultâneas do mesmo livro compartilham uma consulta
+    private final SingleFlight<Long, Optional<Book>> readsById;
+    private final SingleFlight<String, Optional<Book>> readsByIsbn;
+
+    // nulo quando o serviço é montado sem busca de texto completo (testes unitários)
+    private final BookSearchIndex searchIndex;
+
+    @Value("${library.books.isbn-filter.enabled:true}")
+    private boolean isbnFilterEnabled = true;
+
+    @Value("${library.books.isbn-filter.false-positive-rate:0.01}")
+    private double isbnFilterFalsePositiveRate = 0.01;
+
+    // nulo até a primeira carga; enquanto isso toda consulta vai ao banco
+    private volatile IsbnBloomFilter isbnFilter;
+    // filtro em construção: recebe os isbns gravados durante a carga
+    private volatile IsbnBloomFilter pendingIsbnFilter;
+    private final AtomicBoolean loadingIsbnFilter = new AtomicBoolean();
+    // recarga do filtro saturado: leitura bloqueante da base, fora do ForkJoinPool comum
+    private final ExecutorService isbnFilterLoader = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "isbn-filter-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Override
     public Book save(Book book) {
 
-        if (repository.existsByIsbn(book.getIsbn())) {
+        if (mightExist(book.getIsbn()) && repository.existsByIsbn(book.getIsbn())) {
             throw new BusinessException("Isbn já criado");
         }
-        return repository.save(book);
+        Book saved;
+        try {
+            saved = repository.save(book);
+        } catch (DataIntegrityViolationException e) {
+            // outra requisição gravou o mesmo isbn entre a verificação e o insert
+            throw new BusinessException("Isbn já criado");
+        }
+        isbnCache.put(saved);
+        rememberIsbn(saved.getIsbn());
+        indexForSearch(saved);
+        return saved;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        if (id == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            // dentro de uma transação quem chama espera a entidade do próprio contexto de persistência
+            return this.repository.findById(id);
+        }
+        return readsById.load(id, () -> repository.findById(id));
     }
 
     @Override
@@ -36,7 +139,17 @@ public class BookServiceImp implements BookService {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Id não pode ser nulo");
         }
-        repository.delete(book);
+        isbnCache.evict(book.getId());
+        try {
+            repository.delete(book);
+        } catch (DataIntegrityViolationException e) {
+            // a FK de loan: o histórico de empréstimos impede a exclusão do livro
+            throw new BusinessException("Livro possui empréstimos");
+        }
+        if (searchIndex != null) {
+            Long id = book.getId();
+            afterCommit(() -> searchIndex.remove(id));
+        }
     }
 
     @Override
@@ -44,14 +157,275 @@ public class BookServiceImp implements BookService {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Id não pode ser nulo");
         }
-        return repository.save(book);
+        isbnCache.evict(book.getId());
+        Book updated = repository.save(book);
+        isbnCache.put(updated);
+        rememberIsbn(updated.getIsbn());
+        indexForSearch(updated);
+        return updated;
     }
 
     @Override
-    public Optional<Book> getBookByIsbn(String s) {
-        return Optional.empty();
+    public Optional<Book> getBookByIsbn(String isbn) {
+        if (isbn == null) {
+            return Optional.empty();
+        }
+        Optional<Book> cached = isbnCache.get(isbn);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return findByIsbn(isbn);
+        }
+        return readsByIsbn.load(isbn, () -> findByIsbn(isbn));
     }
 
+    private Optional<Book> findByIsbn(String isbn) {
+        Optional<Book> book = repository.findByIsbn(isbn);
+        book.ifPresent(isbnCache::put);
+        return book;
+    }
 
-}
+    /**
+     * Grava o lote com uma única consulta de isbns duplicados e inserts em batch.
+     * Livros cujo isbn já existe na base (ou se repete dentro do lote) são ignorados;
+     * retorna apenas os livros efetivamente gravados.
+     */
+    @Override
+    @Transactional
+    public List<Book> saveAll(Collection<Book> books) {
+        Map<String, Book> byIsbn = new LinkedHashMap<>();
+        books.forEach(book -> byIsbn.putIfAbsent(book.getIsbn(), book));
+        if (byIsbn.isEmpty()) {
+            return Collections.emptyList();
+        }
+        existingIsbns(byIsbn.keySet()).forEach(byIsbn::remove);
+
+        List<Book> newBooks = new ArrayList<>(byIsbn.values());
+        if (newBooks.isEmpty()) {
+            return newBooks;
+        }
+        try {
+            repository.insertAll(newBooks);
+        } catch (DataIntegrityViolationException e) {
+            throw new BusinessException("Isbn já criado");
+        }
+        newBooks.forEach(book -> {
+            rememberIsbn(book.getIsbn());
+            indexForSearch(book);
+        });
+        return newBooks;
+    }
+
+    @Override
+    public List<Book> getPageAfter(Long lastId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Tamanho da página deve ser positivo");
+        }
+        return repository.findPageAfter(lastId, size);
+    }
+
+    @Override
+    public List<Book> find(Book filter, Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Tamanho da página deve ser positivo");
+        }
+        // com prefixo de título, autor ou isbn a ordem segue o índice desse campo (com o id):
+        // o banco lê só o trecho do prefixo, já ordenado, em vez de ler o prefixo inteiro para
+        // ordenar por id. O cursor continua sendo o id; o valor do campo vem do livro do cursor
+        String key = filter == null ? null : sortKey(filter);
+        Specification<Book> spec;
+        if (key == null) {
+            spec = Specification.where(BookSpecifications.idGreaterThan(afterId));
+        } else {
+            String value = afterId == null ? null : keyOf(afterId, key);
+            spec = Specification.where(BookSpecifications.after(key, value, afterId));
+        }
+        if (filter != null) {
+            spec = spec.and(BookSpecifications.titleStartsWith(filter.getTitle()))
+                    .and(BookSpecifications.authorStartsWith(filter.getAuthor()))
+                    .and(BookSpecifications.isbnStartsWith(filter.getIsbn()));
+        }
+        return repository.findPage(spec, key == null ? Sort.by("id") : Sort.by(key, "id"), size);
+    }
+
+    private static String sortKey(Book filter) {
+        if (filter.getTitle() != null && !filter.getTitle().isEmpty()) {
+            return "title";
+        }
+        if (filter.getAuthor() != null && !filter.getAuthor().isEmpty()) {
+            return "author";
+        }
+        if (filter.getIsbn() != null && !filter.getIsbn().isEmpty()) {
+            return "isbn";
+        }
+        return null;
+    }
+
+    // leitura pelo id, servida pelo cache de segundo nível na maior parte das páginas
+    private String keyOf(Long afterId, String key) {
+        Book cursor = repository.findById(afterId)
+                .orElseThrow(() -> new BusinessException("Cursor inválido: o livro " + afterId + " não existe mais."));
+        switch (key) {
+            case "title":
+                return cursor.getTitle();
+            case "author":
+                return cursor.getAuthor();
+            default:
+                return cursor.getIsbn();
+        }
+    }
+
+    /**
+     * Retorna, na ordem recebida, os isbns que já existem no catálogo. Isbns que o
+     * filtro de Bloom garante não existirem nem chegam ao banco; os demais são
+     * confirmados com uma consulta IN a cada {@value #ISBN_QUERY_CHUNK} isbns.
+     */
+    @Override
+    public Set<String> existingIsbns(Collection<String> isbns) {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String isbn : isbns) {
+            if (isbn != null && mightExist(isbn)) {
+                candidates.add(isbn);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> found = new HashSet<>();
+        List<String> chunk = new ArrayList<>(Math.min(candidates.size(), ISBN_QUERY_CHUNK));
+        for (String isbn : candidates) {
+            chunk.add(isbn);
+            if (chunk.size() == ISBN_QUERY_CHUNK) {
+                found.addAll(repository.findExistingIsbns(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            found.addAll(repository.findExistingIsbns(chunk));
+        }
+        candidates.retainAll(found);
+        return candidates;
+    }
+
+    /**
+     * (Re)constrói o filtro de Bloom com todos os isbns da base. Os livros gravados
+     * durante a carga entram também no filtro novo, então ele nunca nega um isbn
+     * existente. Considera que esta instância é a única que grava livros; com várias
+     * instâncias desligue o filtro com {@code library.books.isbn-filter.enabled=false}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIsbnFilter() {
+        if (!isbnFilterEnabled || !loadingIsbnFilter.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            IsbnBloomFilter filter = new IsbnBloomFilter(
+                    Math.max(repository.count() * 2, MIN_ISBN_FILTER_CAPACITY), isbnFilterFalsePositiveRate);
+            pendingIsbnFilter = filter;
+            repository.forEachIsbn(filter::put);
+            isbnFilter = filter;
+        } finally {
+            pendingIsbnFilter = null;
+            loadingIsbnFilter.set(false);
+        }
+    }
+
+    /**
+     * Busca de texto completo em título e autor, ordenada por relevância. Os ids vêm do
+     * índice e os livros da base; livros removidos que o índice ainda não viu são ignorados.
+     */
+    @Override
+    public Page<Book> search(String text, int page, int size) {
+        if (searchIndex == null) {
+            throw new IllegalStateException("Busca de texto completo não configurada");
+        }
+        if (page < 0 || size <= 0) {
+            throw new IllegalArgumentException("Página e tamanho inválidos");
+        }
+        BookSearchIndex.Hits hits = searchIndex.search(text, page, size);
+        Map<Long, Book> byId = new HashMap<>();
+        repository.findAllById(hits.getIds()).forEach(book -> byId.put(book.getId(), book));
+        List<Book> books = new ArrayList<>(hits.getIds().size());
+        for (Long id : hits.getIds()) {
+            Book book = byId.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return new PageImpl<>(books, PageRequest.of(page, size), hits.getTotal());
+    }
+
+    @Override
+    public Future<Long> reindex() {
+        if (searchIndex == null) {
+            throw new IllegalStateException("Busca de texto completo não configurada");
+        }
+        return searchIndex.rebuild(repository::findPageAfter, REINDEX_PAGE_SIZE);
+    }
 
+    // índice vazio com livros na base (primeira subida ou índice em memória): reconstrói
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSearchIndex() throws IOException {
+        if (searchIndex != null && searchIndex.size() == 0 && repository.count() > 0) {
+            reindex();
+        }
+    }
+
+    private static Optional<Book> copy(Optional<Book> book) {
+        return book.map(found -> found.toBuilder().build());
+    }
+
+    private void indexForSearch(Book book) {
+        if (searchIndex != null) {
+            Book copy = book.toBuilder().build();
+            afterCommit(() -> searchIndex.index(copy));
+        }
+    }
+
+    private boolean mightExist(String isbn) {
+        IsbnBloomFilter filter = isbnFilter;
+        return filter == null || filter.mightContain(isbn);
+    }
+
+    // só depois do commit: um isbn incluído antes poderia escapar de uma carga em andamento
+    private void rememberIsbn(String isbn) {
+        if (isbn == null) {
+            return;
+        }
+        afterCommit(() -> addToIsbnFilter(isbn));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void addToIsbnFilter(String isbn) {
+        // o filtro em construção é lido antes do ativo para não perder a troca entre os dois
+        IsbnBloomFilter pending = pendingIsbnFilter;
+        IsbnBloomFilter active = isbnFilter;
+        if (pending != null) {
+            pending.put(isbn);
+        }
+        if (active != null && active != pending) {
+            active.put(isbn);
+            if (active.isSaturated() && !loadingIsbnFilter.get()) {
+                isbnFilterLoader.execute(this::loadIsbnFilter);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        isbnFilterLoader.shutdownNow();
+    }
+}
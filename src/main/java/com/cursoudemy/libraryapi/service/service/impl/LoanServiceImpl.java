@@ -0,0 +1,194 @@
+package com.cursoudemy.libraryapi.service.service.impl;
+
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO;
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO.Status;
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanState;
+import com.cursoudemy.libraryapi.service.LoanService;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import com.cursoudemy.libraryapi.service.writebehind.LoanWriteBehindPipeline;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+@Service
+public class LoanServiceImpl implements LoanService {
+
+    // limite de parâmetros por cláusula IN nas devoluções em lote
+    static final int RETURN_CHUNK = 1000;
+    private static final String ACTIVE_LOAN_CONSTRAINT = "uk_loan_active_book";
+
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository) {
+        this(repository, bookRepository, null, null);
+    }
+
+    @Autowired
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository,
+                           @Nullable LoanWriteBehindPipeline writeBehind,
+                           @Nullable BookAvailabilityService availability) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.writeBehind = writeBehind;
+        this.availability = availability;
+    }
+
+    private LoanRepository repository;
+
+    private BookRepository bookRepository;
+
+    // presente só com library.loans.write-behind.enabled=true
+    private final LoanWriteBehindPipeline writeBehind;
+
+    private final BookAvailabilityService availability;
+
+    @Override
+    @Transactional
+    public Loan save(Loan loan) {
+        Book book = loan.getBook();
+        if (book == null || book.getId() == null) {
+            throw new IllegalArgumentException("Livro não pode ser nulo");
+        }
+        // livro sabidamente emprestado: recusa pela cópia em memória, sem ir ao banco
+        if (availability != null && Boolean.FALSE.equals(availability.isAvailable(book.getId()))) {
+            throw new BusinessException("Book already loaned");
+        }
+        if (loan.getReturned() == null) {
+            loan.setReturned(false);
+        }
+        if (writeBehind != null) {
+            // o pipeline segura o livro em memória até gravar o lote e sobe o contador na mesma
+            // transação da linha; aqui não há nada a gravar na base
+            return writeBehind.submit(loan);
+        }
+        // o livro já foi resolvido pelo isbn: basta uma referência (proxy) para a FK, sem novo SELECT
+        loan.setBook(bookRepository.getById(book.getId()));
+        // sem verificar antes de inserir: a constraint uk_loan_active_book decide quem fica com o
+        // livro, sem locks e sem a janela de corrida de um check-then-insert
+        Loan saved;
+        try {
+            saved = repository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException e) {
+            throw conflictOn(e, ACTIVE_LOAN_CONSTRAINT);
+        }
+        loanCreated(book.getId());
+        return saved;
+    }
+
+    // só a violação esperada vira "Book already loaned"; FK, NOT NULL e afins seguem como erro
+    private static RuntimeException conflictOn(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String name = cause instanceof ConstraintViolationException
+                    ? ((ConstraintViolationException) cause).getConstraintName() : cause.getMessage();
+            if (name != null && name.toLowerCase(Locale.ROOT).contains(constraint)) {
+                return new BusinessException("Book already loaned");
+            }
+        }
+        return e;
+    }
+
+    private void loanCreated(Long bookId) {
+        if (availability != null) {
+            availability.loanCreated(bookId);
+        }
+    }
+
+    @Override
+    public List<LoanHistory> findByCustomer(String customer, Long before, int limit) {
+        return repository.findHistoryByCustomer(customer, cursor(before), PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<LoanHistory> findByBook(Long bookId, Long before, int limit) {
+        return repository.findHistoryByBook(bookId, cursor(before), PageRequest.of(0, limit));
+    }
+
+    private static Long cursor(Long before) {
+        return before == null ? Long.MAX_VALUE : before;
+    }
+
+    @Override
+    @Transactional
+    public List<LoanReturnResultDTO> returnLoans(List<Long> ids, List<String> isbns) {
+        // ordenados: transações concorrentes bloqueiam as linhas na mesma ordem
+        Map<Long, LoanState> byId = new HashMap<>();
+        forEachChunk(new TreeSet<>(withoutNulls(ids)),
+                chunk -> repository.lockByIds(chunk).forEach(state -> byId.put(state.getId(), state)));
+        Map<String, LoanState> byIsbn = new HashMap<>();
+        forEachChunk(new TreeSet<>(withoutNulls(isbns)),
+                chunk -> repository.lockActiveByIsbns(chunk).forEach(state -> byIsbn.put(state.getIsbn(), state)));
+        // isbn sem empréstimo ativo: só falta saber se o livro existe
+        Set<String> withoutActiveLoan = new HashSet<>(withoutNulls(isbns));
+        withoutActiveLoan.removeAll(byIsbn.keySet());
+        Set<String> knownIsbns = new HashSet<>();
+        forEachChunk(withoutActiveLoan, chunk -> knownIsbns.addAll(bookRepository.findExistingIsbns(chunk)));
+
+        List<LoanReturnResultDTO> results = new ArrayList<>(ids.size() + isbns.size());
+        Map<Long, Long> returning = new LinkedHashMap<>();
+        for (Long id : ids) {
+            LoanState state = id == null ? null : byId.get(id);
+            if (state == null) {
+                results.add(new LoanReturnResultDTO(id, null, Status.NOT_FOUND));
+            } else {
+                results.add(new LoanReturnResultDTO(id, state.getIsbn(), returnStatus(state, returning)));
+            }
+        }
+        for (String isbn : isbns) {
+            LoanState state = isbn == null ? null : byIsbn.get(isbn);
+            if (state != null) {
+                results.add(new LoanReturnResultDTO(state.getId(), isbn, returnStatus(state, returning)));
+            } else {
+                results.add(new LoanReturnResultDTO(null, isbn,
+                        knownIsbns.contains(isbn) ? Status.ALREADY_RETURNED : Status.NOT_FOUND));
+            }
+        }
+
+        forEachChunk(returning.keySet(), repository::markReturned);
+        if (availability != null) {
+            forEachChunk(returning.values(), availability::loansReturned);
+        }
+        return results;
+    }
+
+    private static Status returnStatus(LoanState state, Map<Long, Long> returning) {
+        if (Boolean.TRUE.equals(state.getReturned()) || returning.putIfAbsent(state.getId(), state.getBookId()) != null) {
+            return Status.ALREADY_RETURNED;
+        }
+        return Status.RETURNED;
+    }
+
+    private static <T> List<T> withoutNulls(Collection<T> values) {
+        List<T> result = new ArrayList<>(values.size());
+        for (T value : values) {
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private static <T> void forEachChunk(Collection<T> values, Consumer<List<T>> action) {
+        List<T> chunk = new ArrayList<>(Math.min(values.size(), RETURN_CHUNK));
+        for (T value : values) {
+            chunk.add(value);
+            if (chunk.size() == RETURN_CHUNK) {
+                action.accept(chunk);
+                chunk = new ArrayList<>(RETURN_CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            action.accept(chunk);
+        }
+    }
+}
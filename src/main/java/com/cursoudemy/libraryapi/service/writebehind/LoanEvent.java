@@ -0,0 +1,20 @@
+package com.cursoudemy.libraryapi.service.writebehind;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Empréstimo aceito mas ainda não gravado na base. {@code journalOffset} é a posição
+ * do fim do registro no journal, usada como checkpoint depois da gravação.
+ */
+@Data
+@AllArgsConstructor
+class LoanEvent {
+    private long loanId;
+    private long bookId;
+    private String customer;
+    private LocalDate loanDate;
+    private long journalOffset;
+}
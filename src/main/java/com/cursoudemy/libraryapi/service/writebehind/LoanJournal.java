@@ -0,0 +1,179 @@
+package com.cursoudemy.libraryapi.service.writebehind;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local, somente de inclusão, dos empréstimos aceitos pelo write-behind.
+ * Cada registro é {@code [tamanho][crc32][id, livro, data, cliente]}; na leitura um
+ * registro incompleto ou com crc inválido marca o fim do que chegou ao disco (escrita
+ * interrompida por queda) e é descartado. O checkpoint guarda até onde o journal
+ * já foi gravado na base.
+ */
+class LoanJournal implements Closeable {
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final Path checkpointFile;
+    private final FileChannel channel;
+    private final Object syncLock = new Object();
+    private long written;
+    private volatile long synced;
+
+    LoanJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.checkpointFile = directory.resolve("loans.checkpoint");
+        this.channel = FileChannel.open(directory.resolve("loans.journal"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.written = channel.size();
+        this.synced = written;
+    }
+
+    /** Grava o registro (sem fsync) e devolve a posição do fim dele. */
+    synchronized long append(LoanEvent event) throws IOException {
+        byte[] customer = event.getCustomer() == null ? new byte[0] : event.getCustomer().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(3 * Long.BYTES + Short.BYTES + customer.length);
+        payload.putLong(event.getLoanId())
+                .putLong(event.getBookId())
+                .putLong(event.getLoanDate().toEpochDay())
+                .putShort(event.getCustomer() == null ? -1 : (short) customer.length)
+                .put(customer)
+                .flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.remaining());
+        record.putInt(payload.remaining()).putLong(crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            written += channel.write(record, written);
+        }
+        return written;
+    }
+
+    /**
+     * Garante que tudo até {@code offset} está no disco. Commit em grupo: quem chega
+     * enquanto outro fsync está em andamento espera por ele e, na maioria das vezes,
+     * já sai coberto sem um fsync próprio.
+     */
+    void sync(long offset) throws IOException {
+        if (synced >= offset) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= offset) {
+                return;
+            }
+            long target;
+            synchronized (this) {
+                target = written;
+            }
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    /**
+     * Lê os registros a partir de {@code offset}. Se o final do arquivo estiver
+     * corrompido, trunca o journal no último registro válido.
+     */
+    synchronized List<LoanEvent> readFrom(long offset) throws IOException {
+        List<LoanEvent> events = new ArrayList<>();
+        long position = offset;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= written) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            long expectedCrc = header.getLong();
+            if (length <= 0 || position + HEADER_SIZE + length > written) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_SIZE);
+            payload.flip();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            events.add(decode(payload, position));
+        }
+        if (position < written) {
+            channel.truncate(position);
+            written = position;
+            synced = Math.min(synced, position);
+        }
+        return events;
+    }
+
+    long checkpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        String value = new String(Files.readAllBytes(checkpointFile), StandardCharsets.US_ASCII).trim();
+        return value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    /** Grava o checkpoint em um arquivo temporário e o move no lugar do atual. */
+    void checkpoint(long offset) throws IOException {
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(Long.toString(offset).getBytes(StandardCharsets.US_ASCII)));
+            out.force(true);
+        }
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Zera o journal quando tudo o que foi escrito já está na base e o arquivo passou
+     * de {@code maxBytes}. Quem chama deve impedir novos {@link #append} enquanto isso.
+     */
+    synchronized boolean resetIfApplied(long appliedOffset, long maxBytes) throws IOException {
+        if (appliedOffset != written || written < maxBytes) {
+            return false;
+        }
+        checkpoint(0);
+        channel.truncate(0);
+        channel.force(true);
+        written = 0;
+        synced = 0;
+        return true;
+    }
+
+    synchronized long size() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static LoanEvent decode(ByteBuffer payload, long endOffset) {
+        long loanId = payload.getLong();
+        long bookId = payload.getLong();
+        LocalDate loanDate = LocalDate.ofEpochDay(payload.getLong());
+        short length = payload.getShort();
+        String customer = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            payload.get(bytes);
+            customer = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new LoanEvent(loanId, bookId, customer, loanDate, endOffset);
+    }
+}
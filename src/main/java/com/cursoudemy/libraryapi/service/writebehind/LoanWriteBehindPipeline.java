@@ -0,0 +1,358 @@
+package com.cursoudemy.libraryapi.service.writebehind;
+
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.exception.ServiceOverloadedException;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Modo write-behind dos empréstimos ({@code library.loans.write-behind.enabled=true}).
+ * <p>
+ * {@link #submit} valida o empréstimo, reserva o id na mesma sequence usada pelo
+ * Hibernate, grava o evento no journal local (com fsync em grupo) e responde; uma
+ * thread consumidora grava os eventos na base em lotes, junto com o contador de
+ * disponibilidade de cada livro. Com a cópia em memória dos contadores carregada,
+ * {@code submit} não consulta a base: só a sequence, que reserva 50 ids por vez.
+ * Semântica:
+ * <ul>
+ * <li>o id devolvido é definitivo, mas o empréstimo só aparece nas consultas depois
+ * que o lote for gravado (em geral alguns milissegundos). Até lá ele também não pode
+ * ser devolvido: a devolução pelo id ou pelo isbn responde que não o encontrou;</li>
+ * <li>um empréstimo aceito está no disco: se a aplicação cair, o journal é relido a
+ * partir do último checkpoint na próxima subida, ignorando ids já gravados;</li>
+ * <li>com a fila cheia, {@code submit} espera até {@code enqueue-timeout-ms} e então
+ * recusa com {@link ServiceOverloadedException} (503), sem gravar nada;</li>
+ * <li>o livro fica reservado em memória até o lote ser gravado, então dois empréstimos
+ * do mesmo livro continuam sendo barrados na entrada. Considera que esta instância é a
+ * única que grava empréstimos;</li>
+ * <li>um empréstimo recusado pela base na gravação é descartado; o contador do livro
+ * só sobe na transação que grava a linha, então não há o que desfazer.</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "library.loans.write-behind.enabled", havingValue = "true")
+public class LoanWriteBehindPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanWriteBehindPipeline.class);
+
+    private static final String INSERT_LOAN = "insert into loan (id, customer, book_id, loan_date, returned, active_book_id) "
+            + "values (?, ?, ?, ?, false, ?)";
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final LoanRepository loanRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookAvailabilityService availability;
+    private final IdentifierGenerator idGenerator;
+    private final LoanJournal journal;
+    private final BlockingQueue<LoanEvent> queue;
+    private final Semaphore capacity;
+    private final Set<Long> reservedBooks = ConcurrentHashMap.newKeySet();
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final long enqueueTimeoutMillis;
+    private final long journalMaxBytes;
+    private final Counter rejected;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private long appliedOffset;
+
+    public LoanWriteBehindPipeline(LoanRepository loanRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   EntityManagerFactory entityManagerFactory,
+                                   ObjectProvider<BookAvailabilityService> availability,
+                                   ObjectProvider<MeterRegistry> registry,
+                                   @Value("${library.loans.write-behind.journal-dir:data/loan-journal}") String journalDir,
+                                   @Value("${library.loans.write-behind.capacity:10000}") int capacity,
+                                   @Value("${library.loans.write-behind.batch-size:500}") int batchSize,
+                                   @Value("${library.loans.write-behind.max-delay-ms:50}") long maxDelayMillis,
+                                   @Value("${library.loans.write-behind.enqueue-timeout-ms:100}") long enqueueTimeoutMillis,
+                                   @Value("${library.loans.write-behind.journal-max-bytes:67108864}") long journalMaxBytes) throws IOException {
+        this.loanRepository = loanRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.availability = availability.getIfAvailable();
+        this.idGenerator = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel().entityPersister(Loan.class).getIdentifierGenerator();
+        this.journal = new LoanJournal(Paths.get(journalDir));
+        this.queue = new LinkedBlockingQueue<>();
+        this.capacity = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.journalMaxBytes = journalMaxBytes;
+
+        MeterRegistry meterRegistry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("library.loans.write-behind.queue", queue, Collection::size).register(meterRegistry);
+        this.rejected = Counter.builder("library.loans.write-behind.rejected").register(meterRegistry);
+        this.consumer = new Thread(this::consume, "loan-write-behind");
+        this.consumer.setDaemon(true);
+    }
+
+    /** Reaplica o que ficou no journal desde o último checkpoint antes de aceitar novos empréstimos. */
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        List<LoanEvent> pending = journal.readFrom(journal.checkpoint());
+        if (!pending.isEmpty()) {
+            log.info("Reaplicando {} empréstimos do journal", pending.size());
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                writeWithRetry(pending.subList(from, Math.min(from + batchSize, pending.size())), true);
+            }
+        }
+        // tudo reaplicado: o journal recomeça vazio
+        journal.resetIfApplied(journal.size(), 0);
+        appliedOffset = 0;
+        consumer.start();
+    }
+
+    /**
+     * Aceita o empréstimo e devolve-o com o id definitivo. Deve ser chamado dentro da
+     * transação do serviço: a reserva do id (e a consulta de empréstimo ativo, enquanto
+     * a cópia em memória não carregou) usa a mesma conexão.
+     */
+    @Transactional
+    public Loan submit(Loan loan) {
+        Long bookId = loan.getBook().getId();
+        if (!reservedBooks.add(bookId)) {
+            throw new BusinessException("Book already loaned");
+        }
+        boolean accepted = false;
+        try {
+            // o contador sobe antes de o livro sair de reservedBooks, então a cópia em memória
+            // basta; sem ela a resposta vem da base
+            Boolean available = availability == null ? null : availability.isAvailable(bookId);
+            if (available == null ? loanRepository.existsByBookIdAndReturnedFalse(bookId) : !available) {
+                throw new BusinessException("Book already loaned");
+            }
+            if (!capacity.tryAcquire(enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ServiceOverloadedException("Muitos empréstimos pendentes, tente novamente.");
+            }
+            try {
+                loan.setId((Long) idGenerator.generate(entityManager.unwrap(SharedSessionContractImplementor.class), loan));
+                LoanEvent event = new LoanEvent(loan.getId(), bookId, loan.getCustomer(), loan.getLoanDate(), 0);
+                long offset;
+                // journal e fila na mesma ordem: o checkpoint de um lote cobre tudo o que veio antes
+                synchronized (this) {
+                    offset = journal.append(event);
+                    event.setJournalOffset(offset);
+                    queue.add(event);
+                }
+                accepted = true;
+                journal.sync(offset);
+                return loan;
+            } finally {
+                if (!accepted) {
+                    capacity.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Muitos empréstimos pendentes, tente novamente.");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!accepted) {
+                reservedBooks.remove(bookId);
+            }
+        }
+    }
+
+    /** Quantidade de empréstimos aceitos que ainda não foram gravados na base. */
+    public int pending() {
+        return queue.size();
+    }
+
+    int availableCapacity() {
+        return capacity.availablePermits();
+    }
+
+    private void consume() {
+        List<LoanEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LoanEvent first = queue.poll(maxDelayMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    compactJournal();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                // livro e vaga são liberados em qualquer saída; o checkpoint só avança
+                // depois que o lote está na base
+                try {
+                    writeWithRetry(batch, false);
+                    appliedOffset = batch.get(batch.size() - 1).getJournalOffset();
+                    journal.checkpoint(appliedOffset);
+                } finally {
+                    batch.forEach(event -> reservedBooks.remove(event.getBookId()));
+                    capacity.release(batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // lote já gravado: o próximo checkpoint cobre este, e a releitura na subida ignora os ids gravados
+                log.error("Falha no journal do write-behind de empréstimos", e);
+            } catch (RuntimeException e) {
+                // só chega aqui parando a aplicação: o consumidor para sem passar do lote, e ele
+                // e o resto da fila ficam no journal depois do checkpoint para a próxima subida
+                log.error("Write-behind de empréstimos interrompido com {} empréstimos no journal",
+                        batch.size() + queue.size(), e);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Nenhum evento é descartado: o lote é repetido até gravar enquanto a aplicação estiver
+     * no ar. Os inserts um a um de {@link #write} não são atômicos, então uma tentativa que
+     * falhou pode ter gravado ou descartado parte do lote; cada nova tentativa grava só os
+     * ids que ainda não estão na base (como a releitura do journal na subida,
+     * {@code maybeApplied}) e que não foram descartados antes.
+     */
+    private void writeWithRetry(List<LoanEvent> batch, boolean maybeApplied) throws InterruptedException {
+        boolean partial = maybeApplied;
+        Set<Long> discarded = new HashSet<>();
+        while (true) {
+            try {
+                List<LoanEvent> pending = new ArrayList<>(partial ? missing(batch) : batch);
+                pending.removeIf(event -> discarded.contains(event.getLoanId()));
+                write(pending, discarded);
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    throw e;
+                }
+                log.warn("Falha ao gravar o lote do write-behind de empréstimos, nova tentativa em {} ms", RETRY_DELAY_MILLIS, e);
+                partial = true;
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Grava o lote e os contadores dos livros em uma transação com insert em batch. Se
+     * alguma linha violar uma constraint, grava uma a uma, cada linha com o seu contador,
+     * e descarta só as que falharem. Uma linha com o id do próprio evento já na base não
+     * é descarte: o empréstimo já foi gravado.
+     */
+    private void write(List<LoanEvent> batch, Set<Long> discarded) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_LOAN, batch, batch.size(), (statement, event) -> bind(statement, event));
+                batch.forEach(this::loanCreated);
+            });
+        } catch (DataIntegrityViolationException e) {
+            for (LoanEvent event : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.update(INSERT_LOAN, statement -> bind(statement, event));
+                        loanCreated(event);
+                    });
+                } catch (DataIntegrityViolationException rowError) {
+                    if (alreadyApplied(event)) {
+                        continue;
+                    }
+                    discarded.add(event.getLoanId());
+                    rejected.increment();
+                    log.error("Empréstimo {} do livro {} descartado pelo write-behind: {}",
+                            event.getLoanId(), event.getBookId(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean alreadyApplied(LoanEvent event) {
+        return jdbcTemplate.queryForObject("select count(*) from loan where id = ?", Integer.class, event.getLoanId()) > 0;
+    }
+
+    private void loanCreated(LoanEvent event) {
+        if (availability != null) {
+            availability.loanCreated(event.getBookId());
+        }
+    }
+
+    private static void bind(PreparedStatement statement, LoanEvent event) throws SQLException {
+        statement.setLong(1, event.getLoanId());
+        statement.setString(2, event.getCustomer());
+        statement.setLong(3, event.getBookId());
+        statement.setDate(4, event.getLoanDate() == null ? null : Date.valueOf(event.getLoanDate()));
+        statement.setLong(5, event.getBookId());
+    }
+
+    private List<LoanEvent> missing(List<LoanEvent> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        List<Long> ids = new ArrayList<>(batch.size());
+        batch.forEach(event -> ids.add(event.getLoanId()));
+        Set<Long> existing = new HashSet<>(namedJdbcTemplate.queryForList("select id from loan where id in (:ids)",
+                Collections.singletonMap("ids", ids), Long.class));
+        List<LoanEvent> missing = new ArrayList<>(batch.size());
+        batch.stream().filter(event -> !existing.contains(event.getLoanId())).forEach(missing::add);
+        return missing;
+    }
+
+    // com a fila vazia e tudo gravado, um journal grande é zerado
+    private void compactJournal() throws IOException {
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                if (journal.resetIfApplied(appliedOffset, journalMaxBytes)) {
+                    appliedOffset = 0;
+                }
+            }
+        }
+    }
+
+    /** Para de aceitar e espera a fila esvaziar; o que não der tempo fica no journal. */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+        journal.close();
+    }
+}
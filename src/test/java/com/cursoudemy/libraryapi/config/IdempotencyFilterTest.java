@@ -0,0 +1,215 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.exception.ServiceOverloadedException;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.service.BookService;
+import com.cursoudemy.libraryapi.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class IdempotencyFilterTest {
+
+    static final String BOOK_API = "/api/books";
+    static final String LOAN_API = "/api/loans";
+
+    @Autowired
+    MockMvc mvc;
+    @SpyBean
+    BookService bookService;
+    @SpyBean
+    LoanService loanService;
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Test
+    @DisplayName("Deve devolver a resposta gravada sem criar o livro de novo ao repetir a Idempotency-Key")
+    public void replayBookCreationTest() throws Exception {
+        //cenario
+        String json = book("idem-001");
+        MockHttpServletResponse first = mvc.perform(post(BOOK_API, "chave-livro", json)).andReturn().getResponse();
+
+        //execucao
+        MockHttpServletResponse replayed = mvc.perform(post(BOOK_API, "chave-livro", json)).andReturn().getResponse();
+
+        //teste
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(replayed.getStatus()).isEqualTo(201);
+        assertThat(replayed.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        verify(bookService, times(1)).save(any());
+    }
+
+    @Test
+    @DisplayName("Deve criar um único empréstimo ao repetir a Idempotency-Key")
+    public void replayLoanCreationTest() throws Exception {
+        //cenario
+        mvc.perform(post(BOOK_API, "chave-livro-emprestimo", book("idem-002")));
+        String json = "{\"isbn\":\"idem-002\",\"customer\":\"cliente-idem\"}";
+        MockHttpServletResponse first = mvc.perform(post(LOAN_API, "chave-emprestimo", json)).andReturn().getResponse();
+
+        //execucao
+        MockHttpServletResponse replayed = mvc.perform(post(LOAN_API, "chave-emprestimo", json)).andReturn().getResponse();
+
+        //teste
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(replayed.getStatus()).isEqualTo(201);
+        assertThat(replayed.getContentAsString()).isEqualTo(first.getContentAsString());
+        verify(loanService, times(1)).save(any());
+    }
+
+    @Test
+    @DisplayName("Deve responder 422 ao reusar a Idempotency-Key com outro corpo")
+    public void keyReusedWithOtherBodyTest() throws Exception {
+        //cenario
+        mvc.perform(post(BOOK_API, "chave-reusada", book("idem-003")));
+
+        //execucao
+        MockHttpServletResponse response = mvc.perform(post(BOOK_API, "chave-reusada", book("idem-004")))
+                .andReturn().getResponse();
+
+        //teste
+        assertThat(response.getStatus()).isEqualTo(422);
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8)).contains("Idempotency-Key já usada com outro corpo de requisição.");
+        verify(bookService, times(1)).save(any());
+    }
+
+    @Test
+    @DisplayName("Deve executar uma única vez requisições simultâneas com a mesma Idempotency-Key")
+    public void concurrentDuplicatesTest() throws Exception {
+        //cenario
+        int clients = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(bookService).save(any());
+        String json = book("idem-005");
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+
+        //execucao
+        for (int i = 0; i < clients; i++) {
+            responses.add(executor.submit(() -> mvc.perform(post(BOOK_API, "chave-concorrente", json))
+                    .andReturn().getResponse()));
+        }
+        // tempo para as repetições chegarem enquanto a primeira está parada no serviço
+        Thread.sleep(500);
+        release.countDown();
+
+        //teste
+        String body = responses.get(0).get(30, TimeUnit.SECONDS).getContentAsString();
+        for (Future<MockHttpServletResponse> response : responses) {
+            assertThat(response.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(201);
+            assertThat(response.get().getContentAsString()).isEqualTo(body);
+        }
+        verify(bookService, times(1)).save(any());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve executar de novo, sem repetir o erro, as requisições que esperavam uma resposta 5xx")
+    public void concurrentServerErrorTest() throws Exception {
+        //cenario
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await(10, TimeUnit.SECONDS);
+                throw new ServiceOverloadedException("Sobrecarga simulada");
+            }
+            return invocation.callRealMethod();
+        }).when(bookService).save(any());
+        String json = book("idem-008");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //execucao
+        Future<MockHttpServletResponse> first = executor.submit(() -> mvc.perform(post(BOOK_API, "chave-erro", json))
+                .andReturn().getResponse());
+        // a segunda chega enquanto a primeira está parada no serviço
+        Thread.sleep(500);
+        Future<MockHttpServletResponse> second = executor.submit(() -> mvc.perform(post(BOOK_API, "chave-erro", json))
+                .andReturn().getResponse());
+        Thread.sleep(500);
+        release.countDown();
+
+        //teste
+        assertThat(first.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(503);
+        assertThat(second.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(201);
+        assertThat(second.get().getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        verify(bookService, times(2)).save(any());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve responder 413 a corpos acima do limite sem executar a criação")
+    public void bodyTooLargeTest() throws Exception {
+        //cenario
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 70_000; i++) {
+            title.append('a');
+        }
+        String json = "{\"title\":\"" + title + "\",\"author\":\"Artur\",\"isbn\":\"idem-006\"}";
+
+        //execucao
+        MockHttpServletResponse response = mvc.perform(post(BOOK_API, "chave-grande", json)).andReturn().getResponse();
+
+        //teste
+        assertThat(response.getStatus()).isEqualTo(413);
+        verify(bookService, times(0)).save(any());
+    }
+
+    @Test
+    @DisplayName("Deve ignorar a Idempotency-Key fora das criações")
+    public void otherRequestsTest() throws Exception {
+        //execucao
+        MockHttpServletResponse response = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/999999")
+                        .header(IdempotencyFilter.HEADER, "chave-get"))
+                .andReturn().getResponse();
+
+        //teste
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(response.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    private static String book(String isbn) {
+        return "{\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"" + isbn + "\"}";
+    }
+
+    private static MockHttpServletRequestBuilder post(String uri, String key, String json) {
+        return MockMvcRequestBuilders.post(uri)
+                .header(IdempotencyFilter.HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+    }
+}
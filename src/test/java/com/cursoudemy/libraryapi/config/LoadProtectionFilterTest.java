@@ -0,0 +1,115 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+        "library.ratelimit.enabled=true",
+        "library.ratelimit.rate=0.1",
+        "library.ratelimit.burst=2",
+        "library.load-shedding.enabled=true",
+        "library.load-shedding.max-in-flight=2"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class LoadProtectionFilterTest {
+
+    static final String BOOK_API = "/api/books";
+
+    @Autowired
+    MockMvc mvc;
+    @SpyBean
+    BookService bookService;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Deve responder 429 com Retry-After acima do limite do cliente sem chamar o serviço")
+    public void rateLimitTest() throws Exception {
+        //cenario
+        double rejectedBefore = rejected("rate-limit");
+        mvc.perform(get(990001L, "cliente-limitado"));
+        mvc.perform(get(990001L, "cliente-limitado"));
+
+        //execucao
+        MockHttpServletResponse limited = mvc.perform(get(990001L, "cliente-limitado")).andReturn().getResponse();
+        MockHttpServletResponse otherClient = mvc.perform(get(990001L, "outro-cliente")).andReturn().getResponse();
+
+        //teste
+        assertThat(limited.getStatus()).isEqualTo(429);
+        assertThat(Long.parseLong(limited.getHeader(HttpHeaders.RETRY_AFTER))).isBetween(1L, 10L);
+        assertThat(limited.getContentAsString(StandardCharsets.UTF_8)).contains("Limite de requisições excedido");
+        assertThat(otherClient.getStatus()).isEqualTo(404);
+        assertThat(rejected("rate-limit") - rejectedBefore).isEqualTo(1);
+        verify(bookService, times(3)).getById(990001L);
+    }
+
+    @Test
+    @DisplayName("Deve responder 503 com Retry-After acima do limite de requisições em andamento sem chamar o serviço")
+    public void inFlightSheddingTest() throws Exception {
+        //cenario
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(bookService).getById(eq(990002L));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<MockHttpServletResponse>> blocked = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String client = "cliente-lento-" + i;
+            blocked.add(executor.submit(() -> mvc.perform(get(990002L, client)).andReturn().getResponse()));
+        }
+        entered.await(10, TimeUnit.SECONDS);
+
+        //execucao
+        MockHttpServletResponse shed = mvc.perform(get(990003L, "cliente-descartado")).andReturn().getResponse();
+        release.countDown();
+
+        //teste
+        assertThat(shed.getStatus()).isEqualTo(503);
+        assertThat(shed.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        for (Future<MockHttpServletResponse> response : blocked) {
+            assertThat(response.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(404);
+        }
+        assertThat(mvc.perform(get(990003L, "cliente-descartado")).andReturn().getResponse().getStatus()).isEqualTo(404);
+        verify(bookService, times(1)).getById(990003L);
+        verify(bookService, times(2)).getById(990002L);
+        executor.shutdown();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get(LoadProtectionConfig.REJECTED_METRIC).tag("reason", reason).counter().count();
+    }
+
+    private static MockHttpServletRequestBuilder get(Long id, String apiKey) {
+        return MockMvcRequestBuilders.get(BOOK_API + "/" + id).header(RateLimitFilter.API_KEY_HEADER, apiKey);
+    }
+}
@@ -0,0 +1,42 @@
+package com.cursoudemy.libraryapi.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.hamcrest.Matchers.containsString;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+public class MetricsTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Test
+    @DisplayName("Deve expor métricas de endpoints, serviços, repositórios e erros no formato Prometheus")
+    public void prometheusScrapeTest() throws Exception {
+        //cenario
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/999999"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        //execucao e teste
+        mvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("library_service_seconds_bucket")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("method=\"getById\"")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("spring_data_repository_invocations_seconds")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString(
+                        "library_api_errors_total{exception=\"ResourceNotFoundException\",status=\"404\",}")));
+    }
+}
@@ -0,0 +1,76 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:perf-profile-test;DB_CLOSE_ON_EXIT=FALSE",
+        "library.scheduling.enabled=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "perf"})
+public class PerfProfileTest {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Test
+    @DisplayName("Deve desligar o open-in-view, fixar o pool e ligar o padding das listas IN no perfil perf")
+    public void perfProfileTest() {
+        //execucao
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+        Object padding = entityManagerFactory.unwrap(SessionFactory.class).getProperties()
+                .get("hibernate.query.in_clause_parameter_padding");
+
+        //teste
+        assertThat(context.getBeanNamesForType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(8);
+        assertThat(hikari.getMinimumIdle()).isEqualTo(8);
+        assertThat(hikari.getJdbcUrl()).isEqualTo("jdbc:h2:mem:perf-profile-test;DB_CLOSE_ON_EXIT=FALSE");
+        assertThat(padding).isEqualTo("true");
+    }
+
+    @Test
+    @DisplayName("Deve criar e consultar livros sem open-in-view")
+    public void createAndGetBookTest() throws Exception {
+        //cenario
+        String json = "{\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"perf-001\"}";
+        String created = mvc.perform(MockMvcRequestBuilders.post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String id = created.replaceAll(".*\"id\":(\\d+).*", "$1");
+
+        //execucao e teste
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/" + id).param("embed", "availability"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("title").value("As aventuras"));
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/" + id + "/loans"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+}
@@ -0,0 +1,135 @@
+package com.cursoudemy.libraryapi.config;
+
+import com.cursoudemy.libraryapi.dto.BookDTO;
+import com.cursoudemy.libraryapi.dto.LoanDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class WireFormatTest {
+
+    static final String BOOK_API = "/api/books";
+    static final String LOAN_API = "/api/loans";
+    static final MediaType SMILE = MediaType.parseMediaType(WireFormatConfig.APPLICATION_SMILE_VALUE);
+
+    final ObjectMapper smile = new SmileMapper();
+    final ObjectMapper cbor = new CBORMapper();
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    // o cache de segundo nível é do JVM inteiro e pode ter livros de outros contextos de teste com os mesmos ids
+    @BeforeEach
+    public void setUp() {
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Deve criar em Smile e consultar o livro em CBOR, mantendo JSON como padrão")
+    public void singleBookTest() throws Exception {
+        //cenario
+        byte[] body = smile.writeValueAsBytes(book("wire-001"));
+
+        //execucao
+        MockHttpServletResponse created = mvc.perform(MockMvcRequestBuilders.post(BOOK_API)
+                .contentType(SMILE).accept(SMILE).content(body)).andReturn().getResponse();
+        long id = smile.readTree(created.getContentAsByteArray()).get("id").asLong();
+        MockHttpServletResponse asCbor = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/" + id)
+                .accept(MediaType.APPLICATION_CBOR)).andReturn().getResponse();
+        MockHttpServletResponse asDefault = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/" + id))
+                .andReturn().getResponse();
+
+        //teste
+        assertThat(created.getStatus()).isEqualTo(201);
+        assertThat(created.getContentType()).startsWith(WireFormatConfig.APPLICATION_SMILE_VALUE);
+        assertThat(asCbor.getContentType()).startsWith(MediaType.APPLICATION_CBOR_VALUE);
+        assertThat(cbor.readValue(asCbor.getContentAsByteArray(), BookDTO.class).getIsbn()).isEqualTo("wire-001");
+        assertThat(asDefault.getContentType()).startsWith(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(asDefault.getContentAsString()).contains("\"isbn\":\"wire-001\"");
+    }
+
+    @Test
+    @DisplayName("Deve devolver listas de livros e de empréstimos em Smile")
+    public void listsTest() throws Exception {
+        //cenario
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API).contentType(SMILE).content(smile.writeValueAsBytes(book("wire-002"))));
+        mvc.perform(MockMvcRequestBuilders.post(LOAN_API).contentType(SMILE)
+                .content(smile.writeValueAsBytes(LoanDto.builder().isbn("wire-002").customer("cliente-smile").build())));
+
+        //execucao
+        MockHttpServletResponse books = mvc.perform(MockMvcRequestBuilders.get(BOOK_API).param("isbn", "wire-002")
+                .accept(SMILE)).andReturn().getResponse();
+        MockHttpServletResponse loans = mvc.perform(MockMvcRequestBuilders.get(LOAN_API).param("customer", "cliente-smile")
+                .accept(SMILE)).andReturn().getResponse();
+
+        //teste
+        assertThat(books.getStatus()).isEqualTo(200);
+        assertThat(smile.readTree(books.getContentAsByteArray()).get("content").get(0).get("isbn").asText())
+                .isEqualTo("wire-002");
+        assertThat(loans.getStatus()).isEqualTo(200);
+        assertThat(smile.readTree(loans.getContentAsByteArray()).get("content")).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Deve importar em lote uma sequência de livros em CBOR")
+    public void batchTest() throws Exception {
+        //cenario
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (SequenceWriter writer = cbor.writerFor(BookDTO.class).writeValues(body)) {
+            writer.write(book("wire-003"));
+            writer.write(book("wire-004"));
+            writer.write(BookDTO.builder().title("Sem autor").build());
+        }
+
+        //execucao
+        MockHttpServletResponse response = mvc.perform(MockMvcRequestBuilders.post(BOOK_API + "/batch")
+                .contentType(MediaType.APPLICATION_CBOR).accept(MediaType.APPLICATION_CBOR)
+                .content(body.toByteArray())).andReturn().getResponse();
+
+        //teste
+        JsonNode result = cbor.readTree(response.getContentAsByteArray());
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(result.get("received").asInt()).isEqualTo(3);
+        assertThat(result.get("created").asInt()).isEqualTo(2);
+        assertThat(result.get("invalid").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve devolver o corpo de erro no formato pedido")
+    public void errorTest() throws Exception {
+        //execucao
+        MockHttpServletResponse response = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/999999")
+                .accept(SMILE)).andReturn().getResponse();
+
+        //teste
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(smile.readTree(response.getContentAsByteArray()).get("errors")).hasSize(1);
+    }
+
+    private static BookDTO book(String isbn) {
+        return BookDTO.builder().title("As aventuras").author("Artur").isbn(isbn).build();
+    }
+}
@@ -2,15 +2,26 @@ package com.cursoudemy.libraryapi.model.repository;
 
 import com.cursoudemy.libraryapi.model.entity.Book;
 import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.BookSpecifications;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,13 +29,15 @@ import static org.assertj.core.api.InstanceOfAssertFactories.OPTIONAL;
 
 @ExtendWith({SpringExtension.class})
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 public class BookRepositoryTest {
 
     @Autowired
     TestEntityManager entityManager;
     @Autowired
     BookRepository bookRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
 
     @Test
     @DisplayName("Deve retornar verdadeiro quando existir um livro na base com o isbn informado")
@@ -86,6 +99,185 @@ public class BookRepositoryTest {
     }
 
 
+    @Test
+    @DisplayName("Deve obter um livro pelo isbn")
+    public void findByIsbnTest(){
+        Book book = createdValidBook();
+        entityManager.persist(book);
+
+        //execucao
+        Optional<Book> foundBook = bookRepository.findByIsbn("123");
+
+        //teste
+        assertThat(foundBook.isPresent()).isTrue();
+        assertThat(foundBook.get().getId()).isEqualTo(book.getId());
+    }
+
+    @Test
+    @DisplayName("Não deve permitir dois livros com o mesmo isbn")
+    public void uniqueIsbnTest(){
+        entityManager.persist(createdValidBook());
+
+        Throwable exception = org.assertj.core.api.Assertions.catchThrowable(() -> {
+            entityManager.persist(createdValidBook());
+            entityManager.flush();
+        });
+
+        assertThat(exception).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Deve retornar os isbns já cadastrados dentre os informados")
+    public void findExistingIsbnsTest(){
+        entityManager.persist(createdValidBook());
+
+        List<String> existing = bookRepository.findExistingIsbns(Arrays.asList("123", "456"));
+
+        assertThat(existing).containsExactly("123");
+    }
+
+    @Test
+    @DisplayName("Deve inserir livros em lote")
+    public void insertAllTest(){
+        Book first = createdValidBook();
+        Book second = Book.builder().author("Artur").title("Outras aventuras").isbn("456").build();
+
+        bookRepository.insertAll(Arrays.asList(first, second));
+
+        assertThat(first.getId()).isNotNull();
+        assertThat(second.getId()).isNotNull();
+        assertThat(bookRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve paginar os livros pelo id")
+    public void findPageAfterTest(){
+        Book first = createdValidBook();
+        Book second = Book.builder().author("Artur").title("Outras aventuras").isbn("456").build();
+        Book third = Book.builder().author("Artur").title("Mais aventuras").isbn("789").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+
+        List<Book> firstPage = bookRepository.findPageAfter(null, 2);
+        List<Book> secondPage = bookRepository.findPageAfter(firstPage.get(1).getId(), 2);
+
+        assertThat(firstPage).extracting(Book::getIsbn).containsExactly("123", "456");
+        assertThat(secondPage).extracting(Book::getIsbn).containsExactly("789");
+        assertThat(entityManager.getEntityManager().contains(secondPage.get(0))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por prefixo do título a partir do cursor")
+    public void findPageTest(){
+        Book first = createdValidBook();
+        Book second = Book.builder().author("Artur").title("As aventuras 2").isbn("456").build();
+        Book other = Book.builder().author("Artur").title("Outras aventuras").isbn("789").build();
+        Book third = Book.builder().author("Beto").title("As_aventuras 100%").isbn("012").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(other);
+        entityManager.persist(third);
+
+        List<Book> page = bookRepository.findPage(
+                Specification.where(BookSpecifications.titleStartsWith("As aventuras"))
+                        .and(BookSpecifications.idGreaterThan(first.getId())), Sort.by("id"), 10);
+        List<Book> escaped = bookRepository.findPage(BookSpecifications.titleStartsWith("As_"), Sort.by("id"), 10);
+
+        assertThat(page).extracting(Book::getIsbn).containsExactly("456");
+        assertThat(escaped).extracting(Book::getIsbn).containsExactly("012");
+    }
+
+    @Test
+    @DisplayName("Deve paginar a busca por título na ordem de título e id")
+    public void findPageByTitleTest(){
+        Book last = Book.builder().author("Artur").title("As aventuras 3").isbn("111").build();
+        Book first = Book.builder().author("Artur").title("As aventuras 1").isbn("222").build();
+        Book second = Book.builder().author("Beto").title("As aventuras 2").isbn("333").build();
+        Book third = Book.builder().author("Caio").title("As aventuras 2").isbn("444").build();
+        entityManager.persist(last);
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+        Specification<Book> filter = BookSpecifications.titleStartsWith("As aventuras");
+        Sort byTitle = Sort.by("title", "id");
+
+        List<Book> firstPage = bookRepository.findPage(filter, byTitle, 2);
+        List<Book> secondPage = bookRepository.findPage(Specification.where(filter)
+                .and(BookSpecifications.after("title", second.getTitle(), second.getId())), byTitle, 2);
+
+        assertThat(firstPage).extracting(Book::getIsbn).containsExactly("222", "333");
+        assertThat(secondPage).extracting(Book::getIsbn).containsExactly("444", "111");
+    }
+
+    @Test
+    @DisplayName("Deve ler o prefixo do título pelo índice (title, id) já na ordem da página")
+    public void findPageByTitleIndexTest(){
+        // o comando que o findPage gera para a busca por título a partir de um cursor
+        String plan = (String) entityManager.getEntityManager().createNativeQuery("explain select * from book "
+                + "where title >= 'As' and (title > 'As' or title = 'As' and id > 1) and title like 'As%' "
+                + "order by title, id limit 20").getSingleResult();
+
+        assertThat(plan.toUpperCase()).contains("IDX_BOOK_TITLE").contains("INDEX SORTED");
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os isbns de todo o catálogo")
+    public void forEachIsbnTest(){
+        //cenario
+        entityManager.persist(createdValidBook());
+        entityManager.persist(Book.builder().author("Artur").title("Outras aventuras").isbn("456").build());
+        entityManager.flush();
+        List<String> isbns = new ArrayList<>();
+
+        //execucao
+        bookRepository.forEachIsbn(isbns::add);
+
+        //teste
+        assertThat(isbns).containsExactlyInAnyOrder("123", "456");
+    }
+
+    @Test
+    @DisplayName("Deve incrementar a versão do livro a cada atualização")
+    public void versionIncrementTest(){
+        //cenario
+        Book book = entityManager.persistFlushFind(createdValidBook());
+        Long version = book.getVersion();
+
+        //execucao
+        book.setTitle("Novo título");
+        entityManager.flush();
+
+        //teste
+        assertThat(version).isNotNull();
+        assertThat(book.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Deve ler o livro do cache de segundo nível e invalidar ao atualizar")
+    public void secondLevelCacheTest(){
+        //cenario
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Book book = bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("cache-123").build());
+        statistics.clear();
+
+        try {
+            //execucao
+            bookRepository.findById(book.getId());
+            Book cached = bookRepository.findById(book.getId()).get();
+            cached.setTitle("Novo título");
+            bookRepository.save(cached);
+            Book updated = bookRepository.findById(book.getId()).get();
+
+            //teste
+            assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThanOrEqualTo(3);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            assertThat(updated.getTitle()).isEqualTo("Novo título");
+        } finally {
+            bookRepository.deleteById(book.getId());
+        }
+    }
 
     private Book createdValidBook() {
         return Book.builder()
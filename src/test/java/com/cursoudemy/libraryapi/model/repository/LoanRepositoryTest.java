@@ -0,0 +1,159 @@
+package com.cursoudemy.libraryapi.model.repository;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.OverdueLoan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith({SpringExtension.class})
+@ActiveProfiles("test")
+@DataJpaTest
+public class LoanRepositoryTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+    @Autowired
+    LoanRepository repository;
+
+    @Test
+    @DisplayName("Deve verificar se existe empréstimo não devolvido para o livro")
+    public void existsByBookAndNotReturnedTest(){
+        //cenario
+        Book book = createdValidBook();
+        entityManager.persist(book);
+        Loan loan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(false).build();
+        entityManager.persist(loan);
+
+        //execucao
+        boolean exists = repository.existsByBookIdAndReturnedFalse(book.getId());
+
+        //verificacao
+        assertThat(exists).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve retornar falso quando o empréstimo do livro já foi devolvido")
+    public void notExistsWhenReturnedTest(){
+        //cenario
+        Book book = createdValidBook();
+        entityManager.persist(book);
+        Loan loan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(true).build();
+        entityManager.persist(loan);
+
+        //execucao
+        boolean exists = repository.existsByBookIdAndReturnedFalse(book.getId());
+
+        //verificacao
+        assertThat(exists).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve permitir dois empréstimos ativos para o mesmo livro")
+    public void uniqueActiveLoanTest(){
+        //cenario
+        Book book = createdValidBook();
+        entityManager.persist(book);
+        entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(false).build());
+
+        //execucao
+        Throwable exception = org.assertj.core.api.Assertions.catchThrowable(() -> {
+            entityManager.persist(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).returned(false).build());
+            entityManager.flush();
+        });
+
+        //verificacao
+        assertThat(exception).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Deve permitir novo empréstimo depois da devolução")
+    public void loanAfterReturnTest(){
+        //cenario
+        Book book = createdValidBook();
+        entityManager.persist(book);
+        Loan loan = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(false).build());
+        loan.setReturned(true);
+        entityManager.flush();
+
+        //execucao
+        entityManager.persist(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).returned(false).build());
+        entityManager.flush();
+
+        //verificacao
+        assertThat(loan.getActiveBookId()).isNull();
+        assertThat(repository.existsByBookIdAndReturnedFalse(book.getId())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve paginar os empréstimos em atraso a partir do cursor de data e id")
+    public void findOverdueAfterTest(){
+        //cenario
+        LocalDate cutoff = LocalDate.of(2021, 1, 31);
+        Loan first = persistLoan("1", LocalDate.of(2021, 1, 10), false);
+        Loan second = persistLoan("2", LocalDate.of(2021, 1, 10), false);
+        Loan third = persistLoan("3", LocalDate.of(2021, 1, 20), false);
+        persistLoan("4", LocalDate.of(2021, 1, 5), true);
+        persistLoan("5", LocalDate.of(2021, 2, 1), false);
+
+        //execucao
+        List<OverdueLoan> page1 = repository.findOverdueAfter(cutoff, LocalDate.of(1900, 1, 1), 0L, PageRequest.of(0, 2));
+        OverdueLoan last = page1.get(page1.size() - 1);
+        List<OverdueLoan> page2 = repository.findOverdueAfter(cutoff, last.getLoanDate(), last.getLoanId(), PageRequest.of(0, 2));
+
+        //verificacao
+        assertThat(page1.stream().map(OverdueLoan::getLoanId).collect(Collectors.toList()))
+                .containsExactly(first.getId(), second.getId());
+        assertThat(page2).hasSize(1);
+        assertThat(page2.get(0).getLoanId()).isEqualTo(third.getId());
+        assertThat(page2.get(0).getIsbn()).isEqualTo("3");
+        assertThat(page2.get(0).getCustomer()).isEqualTo("Fulano");
+    }
+
+    @Test
+    @DisplayName("Deve paginar o histórico do cliente do mais recente para o mais antigo")
+    public void findHistoryByCustomerTest(){
+        //cenario
+        Loan first = persistLoan("1", LocalDate.of(2021, 1, 10), true);
+        Loan second = persistLoan("2", LocalDate.of(2021, 1, 11), true);
+        Loan third = persistLoan("3", LocalDate.of(2021, 1, 12), false);
+        Book other = entityManager.persist(Book.builder().author("Artur").title("Outro").isbn("4").build());
+        entityManager.persist(Loan.builder().book(other).customer("Ciclano").loanDate(LocalDate.now()).returned(false).build());
+
+        //execucao
+        List<LoanHistory> page1 = repository.findHistoryByCustomer("Fulano", Long.MAX_VALUE, PageRequest.of(0, 2));
+        List<LoanHistory> page2 = repository.findHistoryByCustomer("Fulano", page1.get(1).getId(), PageRequest.of(0, 2));
+
+        //verificacao
+        assertThat(page1).extracting(LoanHistory::getId).containsExactly(third.getId(), second.getId());
+        assertThat(page1.get(0).getIsbn()).isEqualTo("3");
+        assertThat(page1.get(0).getTitle()).isEqualTo("As aventuras");
+        assertThat(page1.get(0).getReturned()).isFalse();
+        assertThat(page2).extracting(LoanHistory::getId).containsExactly(first.getId());
+    }
+
+    private Loan persistLoan(String isbn, LocalDate loanDate, boolean returned) {
+        Book book = entityManager.persist(Book.builder().author("Artur").title("As aventuras").isbn(isbn).build());
+        return entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(loanDate).returned(returned).build());
+    }
+
+    private Book createdValidBook() {
+        return Book.builder()
+                .author("Artur").title("As aventuras").isbn("123").build();
+    }
+}
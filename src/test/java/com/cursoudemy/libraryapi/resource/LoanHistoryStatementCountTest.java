@@ -0,0 +1,127 @@
+package com.cursoudemy.libraryapi.resource;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import org.hamcrest.Matchers;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conta os comandos SQL de cada requisição de histórico: uma página deve custar uma
+ * única consulta, qualquer que seja a quantidade de empréstimos (sem N+1).
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class LoanHistoryStatementCountTest {
+
+    static final int LOANS = 8;
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    LoanRepository loanRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+    List<Book> books = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int i = 0; i < LOANS; i++) {
+            Book book = bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("history-" + i).build());
+            books.add(book);
+            loanRepository.save(Loan.builder().book(book).customer("Historico").loanDate(LocalDate.now()).returned(true).build());
+            loanRepository.save(Loan.builder().book(books.get(0)).customer("Outro").loanDate(LocalDate.now()).returned(true).build());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll(books);
+    }
+
+    @Test
+    @DisplayName("Deve buscar cada página do histórico do cliente com um único comando SQL")
+    public void customerHistoryStatementsTest() throws Exception {
+        //cenario
+        statistics.clear();
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get("/api/loans?customer=Historico&size=" + (LOANS - 1))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(LOANS - 1)))
+                .andExpect(jsonPath("next").isNumber());
+
+        //verificacao
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve buscar o histórico do livro com um único comando SQL")
+    public void bookHistoryStatementsTest() throws Exception {
+        //cenario
+        String url = "/api/books/" + books.get(0).getId() + "/loans";
+        // cache de segundo nível frio: a página com empréstimos não lê o livro
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(url).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(LOANS + 1)))
+                .andExpect(jsonPath("next").doesNotExist());
+
+        //verificacao
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve conferir o livro só quando o histórico vier vazio")
+    public void emptyBookHistoryStatementsTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("history-empty").build());
+        books.add(book);
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/" + book.getId() + "/loans").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(0)));
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/999999/loans").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        //verificacao: página vazia e leitura do livro, em cada requisição
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
+}
@@ -4,6 +4,9 @@ import com.cursoudemy.libraryapi.dto.BookDTO;
 import com.cursoudemy.libraryapi.exception.BusinessException;
 import com.cursoudemy.libraryapi.model.entity.Book;
 import com.cursoudemy.libraryapi.service.BookService;
+import com.cursoudemy.libraryapi.service.LoanService;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import com.cursoudemy.libraryapi.model.entity.BookAvailability;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -15,7 +18,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -25,12 +32,17 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@WebMvcTest(controllers = BookController.class)
+// página de exportação de um livro: a exportação em CSV precisa passar de uma página para a outra
+@WebMvcTest(controllers = BookController.class, properties = "library.books.export.page-size=1")
 @AutoConfigureMockMvc
 public class bookControllerTest {
 
@@ -42,6 +54,12 @@ public class bookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    BookAvailabilityService availabilityService;
+
+    @MockBean
+    LoanService loanService;
+
     private BookDTO createdNewBookDto() {
         return BookDTO.builder().id(1l).author("Artur").title("As aventuras").isbn("001").build();
     }
@@ -153,7 +171,8 @@ public class bookControllerTest {
         //teste
         mvc
                 .perform(request)
-                .andExpect(MockMvcResultMatchers.status().isNotFound());
+                .andExpect(MockMvcResultMatchers.status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Livro não encontrado."));
 
     }
 
@@ -170,6 +189,22 @@ public class bookControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isNoContent());
     }
 
+    @Test
+    @DisplayName("Deve recusar a exclusão de um livro com empréstimos")
+    public void deleteLoanedBookTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1L).build();
+        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.of(book));
+        Mockito.doThrow(new BusinessException("Livro possui empréstimos")).when(service).delete(book);
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .delete(BOOK_API.concat("/"+1));
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Livro possui empréstimos"));
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando não encontrar o livro a ser deletado")
     public void deleteNotFoundBookTest() throws Exception{
@@ -227,4 +262,374 @@ public class bookControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
     }
 
+    @Test @DisplayName("Deve retornar a versão do livro como ETag")
+    public void getBookEtagTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("availability").doesNotExist());
+    }
+
+    @Test @DisplayName("Deve retornar a disponibilidade do livro")
+    public void getAvailabilityTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(availabilityService.get(1L)).willReturn(new BookAvailability(1L, 1, false, 0L));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/availability"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("bookId").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("activeLoans").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("available").value(false));
+    }
+
+    @Test @DisplayName("Deve retornar 404 ao consultar a disponibilidade de um livro inexistente")
+    public void getAvailabilityNotFoundTest() throws Exception{
+        //cenario
+        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/availability"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+        Mockito.verify(availabilityService, Mockito.never()).get(Mockito.anyLong());
+    }
+
+    @Test @DisplayName("Deve incluir a disponibilidade no livro com embed=availability")
+    public void getBookEmbedAvailabilityTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(availabilityService.get(1L)).willReturn(new BookAvailability(1L, 0, true, 4L));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1?embed=availability"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3-5\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("availability.activeLoans").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("availability.available").value(true));
+    }
+
+    @Test @DisplayName("Deve retornar 304 sem corpo quando o cliente já tem a versão atual")
+    public void getBookNotModifiedTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    @Test @DisplayName("Deve retornar 412 ao atualizar com If-Match de uma versão antiga")
+    public void updateBookPreconditionFailedTest() throws Exception{
+        //cenario
+        String json = new ObjectMapper().writeValueAsString(createdNewBookDto());
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").version(4L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+        Mockito.verify(service, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @Test @DisplayName("Deve atualizar com If-Match da versão atual e devolver a nova ETag")
+    public void updateBookIfMatchTest() throws Exception{
+        //cenario
+        String json = new ObjectMapper().writeValueAsString(createdNewBookDto());
+        Book book = Book.builder().id(1L).title("Antigo").author("Artur").isbn("001").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(Mockito.any(Book.class)))
+                .willReturn(Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").version(4L).build());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("title").value("As aventuras"));
+    }
+
+    @Test @DisplayName("Deve retornar 412 quando o livro for alterado durante a atualização")
+    public void updateBookOptimisticLockTest() throws Exception{
+        //cenario
+        String json = new ObjectMapper().writeValueAsString(createdNewBookDto());
+        Book book = Book.builder().id(1L).title("Antigo").author("Artur").isbn("001").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(Mockito.any(Book.class)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isPreconditionFailed())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("O livro foi alterado por outra requisição."));
+    }
+
+    @Test @DisplayName("Deve importar livros em lote a partir de um array JSON")
+    public void createBatchFromJsonArrayTest() throws Exception{
+        //cenario
+        BDDMockito.given(service.saveAll(Mockito.anyCollection()))
+                .willAnswer(invocation -> {
+                    List<Book> books = ((List<Book>) invocation.getArgument(0));
+                    return books.subList(0, 1);
+                });
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(
+                BookDTO.builder().author("Artur").title("As aventuras").isbn("001").build(),
+                BookDTO.builder().author("Artur").title("Outras aventuras").isbn("002").build(),
+                new BookDTO()));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("received").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("created").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("invalid").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("duplicatedIsbns", Matchers.contains("002")));
+    }
+
+    @Test @DisplayName("Deve importar livros em lote a partir de NDJSON")
+    public void createBatchFromNdjsonTest() throws Exception{
+        //cenario
+        BDDMockito.given(service.saveAll(Mockito.anyCollection()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+        ObjectMapper mapper = new ObjectMapper();
+        String ndjson = mapper.writeValueAsString(createdNewBookDto()) + "\n"
+                + mapper.writeValueAsString(BookDTO.builder().author("Artur").title("Outras aventuras").isbn("002").build()) + "\n";
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .content(ndjson)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_NDJSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("received").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("created").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("duplicatedIsbns", Matchers.hasSize(0)));
+        Mockito.verify(service, Mockito.times(1)).saveAll(Mockito.anyCollection());
+    }
+
+    @Test @DisplayName("Deve retornar os isbns já cadastrados em uma única chamada")
+    public void existingIsbnsTest() throws Exception{
+        //cenario
+        BDDMockito.given(service.existingIsbns(Arrays.asList("001", "002", "003")))
+                .willReturn(new LinkedHashSet<>(Arrays.asList("001", "003")));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/isbns/exists"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"001\",\"002\",\"003\"]");
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("[\"001\",\"003\"]", true));
+    }
+
+    @Test @DisplayName("Deve buscar livros por texto completo")
+    public void searchBooksTest() throws Exception{
+        //cenario
+        Book book = createdNewBook();
+        BDDMockito.given(service.search("aventu", 1, 5))
+                .willReturn(new PageImpl<>(Arrays.asList(book), PageRequest.of(1, 5), 6));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/search"))
+                .param("q", "aventu")
+                .param("page", "1")
+                .param("size", "5")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].isbn").value("001"))
+                .andExpect(MockMvcResultMatchers.jsonPath("page").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("total").value(6));
+    }
+
+    @Test @DisplayName("Deve disparar a reconstrução do índice de busca")
+    public void reindexTest() throws Exception{
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/search/reindex")))
+                .andExpect(MockMvcResultMatchers.status().isAccepted());
+
+        Mockito.verify(service).reindex();
+    }
+
+    @Test @DisplayName("Deve exportar o catálogo em NDJSON")
+    public void exportNdjsonTest() throws Exception{
+        //cenario
+        Book first = createdNewBook();
+        Book second = Book.builder().id(2L).author("Artur").title("Outras aventuras").isbn("002").build();
+        BDDMockito.given(service.getPageAfter(Mockito.isNull(), Mockito.anyInt()))
+                .willReturn(Arrays.asList(first, second));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export"));
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        "{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\"}\n"
+                                + "{\"id\":2,\"title\":\"Outras aventuras\",\"author\":\"Artur\",\"isbn\":\"002\"}\n"));
+    }
+
+    @Test @DisplayName("Deve exportar o catálogo em CSV percorrendo as páginas")
+    public void exportCsvTest() throws Exception{
+        //cenario
+        Book first = createdNewBook();
+        Book second = Book.builder().id(2L).author("Artur, o grande").title("Outras aventuras").isbn("002").build();
+        BDDMockito.given(service.getPageAfter(Mockito.isNull(), Mockito.eq(1)))
+                .willReturn(Arrays.asList(first));
+        BDDMockito.given(service.getPageAfter(Mockito.eq(1L), Mockito.eq(1)))
+                .willReturn(Arrays.asList(second));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export"))
+                .param("format", "csv");
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        "id,title,author,isbn\n"
+                                + "1,As aventuras,Artur,001\n"
+                                + "2,Outras aventuras,\"Artur, o grande\",002\n"));
+        Mockito.verify(service).getPageAfter(1L, 1);
+        Mockito.verify(service).getPageAfter(2L, 1);
+    }
+
+    @Test @DisplayName("Deve retornar bad request para formato de exportação desconhecido")
+    public void exportInvalidFormatTest() throws Exception{
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export"))
+                .param("format", "xml");
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test @DisplayName("Deve buscar livros filtrando e paginando por cursor")
+    public void findBooksTest() throws Exception{
+        //cenario
+        Book first = createdNewBook();
+        Book second = Book.builder().id(2L).author("Artur").title("As aventuras 2").isbn("002").build();
+        Book third = Book.builder().id(3L).author("Artur").title("As aventuras 3").isbn("003").build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.isNull(), Mockito.eq(3)))
+                .willReturn(Arrays.asList(first, second, third));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API)
+                .param("title", "As aventuras")
+                .param("size", "2")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[1].id").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("next").value(2));
+        Mockito.verify(service).find(Mockito.argThat(filter -> "As aventuras".equals(filter.getTitle())
+                && filter.getAuthor() == null), Mockito.isNull(), Mockito.eq(3));
+    }
+
+    @Test @DisplayName("Deve retornar a última página sem cursor")
+    public void findBooksLastPageTest() throws Exception{
+        //cenario
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.eq(1L), Mockito.anyInt()))
+                .willReturn(Arrays.asList(Book.builder().id(2L).author("Artur").title("As aventuras 2").isbn("002").build()));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API)
+                .param("after", "1")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("next").doesNotExist());
+    }
+
 }
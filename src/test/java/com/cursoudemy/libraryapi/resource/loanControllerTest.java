@@ -1,9 +1,12 @@
 package com.cursoudemy.libraryapi.resource;
 
 import com.cursoudemy.libraryapi.dto.LoanDto;
+import com.cursoudemy.libraryapi.dto.LoanReturnDTO;
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO;
 import com.cursoudemy.libraryapi.exception.BusinessException;
 import com.cursoudemy.libraryapi.model.entity.Book;
 import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanHistory;
 import com.cursoudemy.libraryapi.service.BookService;
 import com.cursoudemy.libraryapi.service.LoanService;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -27,6 +30,7 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Optional;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -121,4 +125,54 @@ public class loanControllerTest {
     }
 
 
+
+    @Test
+    @DisplayName("Deve listar o histórico do cliente com cursor para a próxima página")
+    public void findByCustomerTest() throws Exception {
+        //cenario
+        LocalDate today = LocalDate.now();
+        BDDMockito.given(loanService.findByCustomer("Fulano", null, 3)).willReturn(Arrays.asList(
+                new LoanHistory(9l, "Fulano", today, false, 1l, "123", "As aventuras"),
+                new LoanHistory(7l, "Fulano", today, true, 2l, "456", "Outro"),
+                new LoanHistory(4l, "Fulano", today, true, 3l, "789", "Mais um")));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(Loan_API + "?customer=Fulano&size=2")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(2)))
+                .andExpect(jsonPath("content[0].isbn").value("123"))
+                .andExpect(jsonPath("next").value(7));
+    }
+
+    @Test
+    @DisplayName("Deve devolver empréstimos em lote com o resultado de cada item")
+    public void returnLoansTest() throws Exception {
+        //cenario
+        LoanReturnDTO dto = LoanReturnDTO.builder().ids(Arrays.asList(1l, 2l)).isbns(Arrays.asList("123")).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+        BDDMockito.given(loanService.returnLoans(dto.getIds(), dto.getIsbns())).willReturn(Arrays.asList(
+                new LoanReturnResultDTO(1l, "456", LoanReturnResultDTO.Status.RETURNED),
+                new LoanReturnResultDTO(2l, null, LoanReturnResultDTO.Status.NOT_FOUND),
+                new LoanReturnResultDTO(3l, "123", LoanReturnResultDTO.Status.ALREADY_RETURNED)));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(Loan_API + "/return")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //teste
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(3)))
+                .andExpect(jsonPath("[0].status").value("RETURNED"))
+                .andExpect(jsonPath("[1].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("[2].loanId").value(3));
+    }
 }
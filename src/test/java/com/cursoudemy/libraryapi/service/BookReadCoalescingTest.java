@@ -0,0 +1,135 @@
+package com.cursoudemy.libraryapi.service;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Leituras simultâneas do mesmo livro: as consultas de livros são atrasadas para que
+ * todas as leituras cheguem enquanto a primeira ainda está no banco.
+ */
+@SpringBootTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.cursoudemy.libraryapi.service.BookReadCoalescingTest$SlowBookQueries"})
+@ActiveProfiles("test")
+public class BookReadCoalescingTest {
+
+    static final int READERS = 50;
+    static final long QUERY_DELAY_MILLIS = 300;
+
+    @Autowired
+    BookService bookService;
+    @Autowired
+    BookRepository repository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Deve fazer uma única consulta para 50 leituras simultâneas do mesmo id")
+    public void coalesceReadsByIdTest() throws Exception {
+        //cenario
+        Book book = repository.save(Book.builder().title("As aventuras").author("Artur").isbn("coalesce-001").build());
+        Long id = book.getId();
+        double coalescedBefore = coalesced("id");
+
+        //execucao
+        long statements = readConcurrently(() -> bookService.getById(id));
+
+        //verificacao
+        assertThat(statements).isEqualTo(1);
+        assertThat(coalesced("id") - coalescedBefore).isEqualTo(READERS - 1);
+    }
+
+    @Test
+    @DisplayName("Deve fazer uma única consulta para 50 leituras simultâneas do mesmo isbn")
+    public void coalesceReadsByIsbnTest() throws Exception {
+        //cenario
+        repository.save(Book.builder().title("As aventuras").author("Artur").isbn("coalesce-002").build());
+        double coalescedBefore = coalesced("isbn");
+
+        //execucao
+        long statements = readConcurrently(() -> bookService.getBookByIsbn("coalesce-002"));
+
+        //verificacao
+        assertThat(statements).isEqualTo(1);
+        assertThat(coalesced("isbn") - coalescedBefore).isEqualTo(READERS - 1);
+    }
+
+    /** Executa as leituras ao mesmo tempo e devolve quantos comandos foram enviados ao banco. */
+    private long readConcurrently(Supplier<Optional<Book>> read) throws Exception {
+        entityManagerFactory.getCache().evictAll();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        List<Future<Optional<Book>>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return read.get();
+            }));
+        }
+        SlowBookQueries.enabled = true;
+        List<Book> books = new ArrayList<>();
+        try {
+            start.countDown();
+            for (Future<Optional<Book>> result : results) {
+                books.add(result.get(30, TimeUnit.SECONDS).get());
+            }
+        } finally {
+            SlowBookQueries.enabled = false;
+            executor.shutdown();
+        }
+
+        // mesmo resultado para todos, mas cada leitura com a sua cópia
+        assertThat(books).allSatisfy(book -> assertThat(book).isEqualTo(books.get(0)));
+        assertThat(books.stream().distinct().count()).isEqualTo(1);
+        Set<Book> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        instances.addAll(books);
+        assertThat(instances).hasSize(READERS);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private double coalesced(String lookup) {
+        return meterRegistry.get("library.books.reads.coalesced").tag("lookup", lookup).functionCounter().count();
+    }
+
+    public static class SlowBookQueries implements StatementInspector {
+
+        static volatile boolean enabled;
+
+        @Override
+        public String inspect(String sql) {
+            if (enabled && sql.startsWith("select") && sql.contains(" from book ")) {
+                try {
+                    Thread.sleep(QUERY_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return sql;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.cursoudemy.libraryapi.service;
 import com.cursoudemy.libraryapi.exception.BusinessException;
 import com.cursoudemy.libraryapi.model.entity.Book;
 import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.service.search.BookSearchIndex;
 import com.cursoudemy.libraryapi.service.service.impl.BookServiceImp;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,10 +12,20 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -50,11 +61,53 @@ public class BookServiceTest {
         assertThat(savedBook.getIsbn()).isEqualTo("001");
     }
 
+    @Test
+    @DisplayName("Deve ordenar a busca por título pelo título e id, a partir do livro do cursor")
+    public void findByTitleTest(){
+        //cenario
+        Mockito.when(repository.findById(11L))
+                .thenReturn(Optional.of(Book.builder().id(11L).author("Artur").title("As aventuras").isbn("001").build()));
+
+        //execucao
+        service.find(Book.builder().title("As").build(), 11L, 20);
+
+        //teste
+        Mockito.verify(repository).findPage(Mockito.any(), Mockito.eq(Sort.by("title", "id")), Mockito.eq(20));
+    }
+
+    @Test
+    @DisplayName("Deve recusar o cursor de um livro que não existe mais")
+    public void findWithUnknownCursorTest(){
+        //cenario
+        Mockito.when(repository.findById(11L)).thenReturn(Optional.empty());
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.find(Book.builder().author("Artur").build(), 11L, 20));
+
+        //teste
+        assertThat(exception).isInstanceOf(BusinessException.class);
+        Mockito.verify(repository, Mockito.never()).findPage(Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
     private Book createdValidBook() {
         return Book.builder()
                 .author("Artur").title("As aventuras").isbn("001").build();
     }
 
+    @Test
+    @DisplayName("Deve recusar a exclusão de um livro com empréstimos")
+    public void deleteLoanedBookTest(){
+        //cenario
+        Book book = Book.builder().id(1L).build();
+        Mockito.doThrow(new DataIntegrityViolationException("fk_loan_book")).when(repository).delete(book);
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.delete(book));
+
+        //teste
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Livro possui empréstimos");
+    }
+
     @Test
     @DisplayName("Deve Lançar erro quando tentar salvar isbn duplicado")
     public void shouldNotSaveABookWithDuplicatedISBN(){
@@ -178,4 +231,183 @@ public class BookServiceTest {
         Mockito.verify(repository, Mockito.never()).delete(book);
     }
 
+    @Test
+    @DisplayName("Deve obter um livro pelo isbn")
+    public void getBookByIsbnTest(){
+        //cenario
+        String isbn = "001";
+        Book book = createdValidBook();
+        book.setId(1l);
+        Mockito.when(repository.findByIsbn(isbn)).thenReturn(Optional.of(book));
+
+        //execucao
+        Optional<Book> foundBook = service.getBookByIsbn(isbn);
+
+        //teste
+        assertThat(foundBook.isPresent()).isTrue();
+        assertThat(foundBook.get().getId()).isEqualTo(1l);
+        assertThat(foundBook.get().getIsbn()).isEqualTo(isbn);
+        Mockito.verify(repository, Mockito.times(1)).findByIsbn(isbn);
+    }
+
+    @Test
+    @DisplayName("Deve consultar a base apenas uma vez para o mesmo isbn")
+    public void getBookByIsbnFromCacheTest(){
+        //cenario
+        String isbn = "001";
+        Book book = createdValidBook();
+        book.setId(1l);
+        Mockito.when(repository.findByIsbn(isbn)).thenReturn(Optional.of(book));
+
+        //execucao
+        service.getBookByIsbn(isbn);
+        Optional<Book> foundBook = service.getBookByIsbn(isbn);
+
+        //teste
+        assertThat(foundBook.isPresent()).isTrue();
+        assertThat(foundBook.get().getTitle()).isEqualTo(book.getTitle());
+        Mockito.verify(repository, Mockito.times(1)).findByIsbn(isbn);
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache do isbn ao deletar um livro")
+    public void getBookByIsbnAfterDeleteTest(){
+        //cenario
+        String isbn = "001";
+        Book book = createdValidBook();
+        book.setId(1l);
+        Mockito.when(repository.findByIsbn(isbn)).thenReturn(Optional.of(book));
+        service.getBookByIsbn(isbn);
+
+        //execucao
+        service.delete(book);
+        Mockito.when(repository.findByIsbn(isbn)).thenReturn(Optional.empty());
+        Optional<Book> foundBook = service.getBookByIsbn(isbn);
+
+        //teste
+        assertThat(foundBook.isPresent()).isFalse();
+        Mockito.verify(repository, Mockito.times(2)).findByIsbn(isbn);
+    }
+
+    @Test
+    @DisplayName("Deve retornar vazio quando o isbn nao existir")
+    public void getBookByIsbnNotFoundTest(){
+        Mockito.when(repository.findByIsbn(Mockito.anyString())).thenReturn(Optional.empty());
+
+        Optional<Book> book = service.getBookByIsbn("001");
+
+        assertThat(book.isPresent()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve salvar livros em lote ignorando isbns duplicados")
+    public void saveAllTest(){
+        //cenario
+        Book first = createdValidBook();
+        Book duplicatedInBatch = createdValidBook();
+        Book existing = Book.builder().author("Artur").title("Outras aventuras").isbn("002").build();
+        Mockito.when(repository.findExistingIsbns(Mockito.anyCollection()))
+                .thenReturn(Collections.singletonList("002"));
+
+        //execucao
+        List<Book> saved = service.saveAll(Arrays.asList(first, duplicatedInBatch, existing));
+
+        //teste
+        assertThat(saved).containsExactly(first);
+        Mockito.verify(repository, Mockito.times(1)).findExistingIsbns(Mockito.anyCollection());
+        Mockito.verify(repository, Mockito.times(1)).insertAll(Collections.singletonList(first));
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve verificar isbns existentes em blocos, sem consultar um por um")
+    public void existingIsbnsTest(){
+        //cenario
+        List<String> isbns = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            isbns.add("isbn-" + i);
+        }
+        isbns.add("isbn-0");
+        isbns.add(null);
+        Mockito.when(repository.findExistingIsbns(Mockito.anyCollection()))
+                .thenAnswer(invocation -> {
+                    Collection<String> chunk = invocation.getArgument(0);
+                    return chunk.contains("isbn-2400") ? Collections.singletonList("isbn-2400") : Collections.emptyList();
+                });
+
+        //execucao
+        Set<String> existing = service.existingIsbns(isbns);
+
+        //teste
+        assertThat(existing).containsExactly("isbn-2400");
+        Mockito.verify(repository, Mockito.times(3)).findExistingIsbns(Mockito.anyCollection());
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve responder isbns inexistentes pelo filtro de Bloom e enxergar os livros gravados depois")
+    public void existingIsbnsWithFilterTest(){
+        //cenario
+        Mockito.when(repository.count()).thenReturn(1L);
+        Mockito.doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            action.accept("001");
+            return null;
+        }).when(repository).forEachIsbn(Mockito.any());
+        ((BookServiceImp) service).loadIsbnFilter();
+        Mockito.when(repository.save(Mockito.any(Book.class)))
+                .thenReturn(Book.builder().id(12L).author("Artur").title("Outras aventuras").isbn("002").build());
+        Mockito.when(repository.findExistingIsbns(Mockito.anyCollection()))
+                .thenAnswer(invocation -> new ArrayList<>(invocation.<Collection<String>>getArgument(0)));
+
+        //execucao
+        Set<String> beforeSave = service.existingIsbns(Arrays.asList("999", "998", "997"));
+        service.save(Book.builder().author("Artur").title("Outras aventuras").isbn("002").build());
+        Set<String> afterSave = service.existingIsbns(Arrays.asList("001", "002"));
+
+        //teste
+        assertThat(beforeSave).isEmpty();
+        assertThat(afterSave).containsExactly("001", "002");
+        Mockito.verify(repository, Mockito.times(1)).findExistingIsbns(Mockito.anyCollection());
+        Mockito.verify(repository, Mockito.never()).existsByIsbn("002");
+    }
+
+    @Test
+    @DisplayName("Deve buscar pelo índice e devolver os livros na ordem de relevância")
+    public void searchTest(){
+        //cenario
+        BookSearchIndex searchIndex = Mockito.mock(BookSearchIndex.class);
+        BookService service = new BookServiceImp(repository, 10, searchIndex);
+        Book first = Book.builder().id(2L).author("Artur").title("As aventuras 2").isbn("002").build();
+        Book second = Book.builder().id(1L).author("Artur").title("As aventuras").isbn("001").build();
+        Mockito.when(searchIndex.search("aventuras", 0, 10))
+                .thenReturn(new BookSearchIndex.Hits(Arrays.asList(2L, 3L, 1L), 3));
+        Mockito.when(repository.findAllById(Arrays.asList(2L, 3L, 1L))).thenReturn(Arrays.asList(second, first));
+
+        //execucao
+        Page<Book> page = service.search("aventuras", 0, 10);
+
+        //teste
+        assertThat(page.getContent()).containsExactly(first, second);
+        // o id 3 foi removido da base mas ainda não do índice
+        assertThat(page.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve enviar o livro salvo para o índice de busca")
+    public void saveIndexesBookTest(){
+        //cenario
+        BookSearchIndex searchIndex = Mockito.mock(BookSearchIndex.class);
+        BookService service = new BookServiceImp(repository, 10, searchIndex);
+        Book saved = Book.builder().id(11L).author("Artur").isbn("001").title("As aventuras").build();
+        Mockito.when(repository.save(Mockito.any(Book.class))).thenReturn(saved);
+
+        //execucao
+        service.save(createdValidBook());
+        service.delete(saved);
+
+        //teste
+        Mockito.verify(searchIndex).index(saved);
+        Mockito.verify(searchIndex).remove(11L);
+    }
 }
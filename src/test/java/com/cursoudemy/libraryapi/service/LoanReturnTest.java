@@ -0,0 +1,104 @@
+package com.cursoudemy.libraryapi.service;
+
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO;
+import com.cursoudemy.libraryapi.dto.LoanReturnResultDTO.Status;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.BookAvailability;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.BookAvailabilityRepository;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import com.cursoudemy.libraryapi.service.service.impl.LoanServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({LoanServiceImpl.class, BookAvailabilityService.class})
+public class LoanReturnTest {
+
+    @Autowired
+    LoanService service;
+    @Autowired
+    BookAvailabilityService availabilityService;
+    @Autowired
+    BookAvailabilityRepository availabilityRepository;
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Deve devolver em lote por id e por isbn informando o resultado de cada item")
+    public void returnLoansTest(){
+        //cenario
+        Loan byId = createLoan("ret-1", false);
+        Loan byIsbn = createLoan("ret-2", false);
+        Loan returned = createLoan("ret-3", true);
+        entityManager.persist(Book.builder().author("Artur").title("Sem empréstimo").isbn("ret-4").build());
+        entityManager.flush();
+
+        //execucao
+        List<LoanReturnResultDTO> results = service.returnLoans(
+                Arrays.asList(byId.getId(), returned.getId(), -1L, byId.getId()),
+                Arrays.asList("ret-2", "ret-4", "nao-existe"));
+
+        //verificacao
+        assertThat(results).extracting(LoanReturnResultDTO::getStatus).containsExactly(
+                Status.RETURNED, Status.ALREADY_RETURNED, Status.NOT_FOUND, Status.ALREADY_RETURNED,
+                Status.RETURNED, Status.ALREADY_RETURNED, Status.NOT_FOUND);
+        assertThat(results.get(0).getIsbn()).isEqualTo("ret-1");
+        assertThat(results.get(4).getLoanId()).isEqualTo(byIsbn.getId());
+
+        entityManager.clear();
+        Loan stored = entityManager.find(Loan.class, byIsbn.getId());
+        assertThat(stored.getReturned()).isTrue();
+        assertThat(stored.getActiveBookId()).isNull();
+        BookAvailability availability = availabilityRepository.findById(byId.getBook().getId()).get();
+        assertThat(availability.getActiveLoans()).isZero();
+        assertThat(availability.isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve devolver mais itens que o tamanho de um bloco")
+    public void returnLoansInChunksTest(){
+        //cenario
+        // blocos de 1000 ids por consulta
+        int total = 1005;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            ids.add(createLoan("chunk-" + i, false).getId());
+        }
+        entityManager.flush();
+
+        //execucao
+        List<LoanReturnResultDTO> results = service.returnLoans(ids, Collections.emptyList());
+
+        //verificacao
+        assertThat(results).hasSize(total).allMatch(result -> result.getStatus() == Status.RETURNED);
+        entityManager.clear();
+        assertThat(entityManager.find(Loan.class, ids.get(total - 1)).getReturned()).isTrue();
+    }
+
+    private Loan createLoan(String isbn, boolean returned) {
+        Book book = entityManager.persist(Book.builder().author("Artur").title("As aventuras").isbn(isbn).build());
+        Loan loan = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(returned).build());
+        if (!returned) {
+            availabilityService.loanCreated(book.getId());
+        }
+        return loan;
+    }
+}
@@ -0,0 +1,99 @@
+package com.cursoudemy.libraryapi.service;
+
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Teste de estresse: muitos clientes disputando os mesmos livros ao mesmo tempo.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class LoanServiceConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanServiceConcurrencyTest.class);
+
+    static final int CLIENTS = 200;
+    static final int BOOKS = 10;
+
+    @Autowired
+    BookService bookService;
+    @Autowired
+    LoanService loanService;
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Test
+    @DisplayName("Deve emprestar cada livro uma única vez com 200 clientes concorrentes")
+    public void noDoubleLoanUnderContentionTest() throws Exception {
+        //cenario
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(bookService.save(Book.builder().author("Artur").title("As aventuras").isbn("stress-" + i).build()));
+        }
+        AtomicIntegerArray successes = new AtomicIntegerArray(BOOKS);
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger unexpected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        //execucao
+        for (int client = 0; client < CLIENTS; client++) {
+            String customer = "cliente-" + client;
+            int offset = client;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < BOOKS; i++) {
+                    int index = (offset + i) % BOOKS;
+                    Book book = bookService.getBookByIsbn(books.get(index).getIsbn()).get();
+                    try {
+                        loanService.save(Loan.builder().book(book).customer(customer).loanDate(LocalDate.now()).build());
+                        successes.incrementAndGet(index);
+                    } catch (BusinessException e) {
+                        rejected.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        unexpected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        executor.shutdown();
+
+        //teste
+        int attempts = CLIENTS * BOOKS;
+        log.info("{} tentativas de empréstimo em {} ms ({} ops/s), {} recusadas",
+                attempts, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(attempts / (elapsedNanos / 1_000_000_000.0)), rejected.get());
+        assertThat(unexpected.get()).isZero();
+        for (int i = 0; i < BOOKS; i++) {
+            assertThat(successes.get(i)).isEqualTo(1);
+            assertThat(loanRepository.existsByBookIdAndReturnedFalse(books.get(i).getId())).isTrue();
+        }
+        assertThat(rejected.get()).isEqualTo(attempts - BOOKS);
+    }
+}
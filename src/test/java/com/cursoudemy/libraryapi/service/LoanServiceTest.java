@@ -0,0 +1,138 @@
+package com.cursoudemy.libraryapi.service;
+
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import com.cursoudemy.libraryapi.service.service.impl.LoanServiceImpl;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanServiceTest {
+
+    LoanService service;
+    @MockBean
+    LoanRepository repository;
+    @MockBean
+    BookRepository bookRepository;
+
+    @BeforeEach
+    public void setUp(){
+        this.service = new LoanServiceImpl(repository, bookRepository);
+    }
+
+    @Test
+    @DisplayName("Deve salvar um empréstimo")
+    public void saveLoanTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Book reference = Book.builder().id(1l).build();
+        Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+        Loan savedLoan = Loan.builder().id(1l).book(reference).customer("Fulano").loanDate(LocalDate.now()).returned(false).build();
+        Mockito.when(bookRepository.getById(1l)).thenReturn(reference);
+        Mockito.when(repository.saveAndFlush(savingLoan)).thenReturn(savedLoan);
+
+        //execucao
+        Loan loan = service.save(savingLoan);
+
+        //teste
+        assertThat(loan.getId()).isEqualTo(savedLoan.getId());
+        assertThat(savingLoan.getBook()).isSameAs(reference);
+        assertThat(savingLoan.getReturned()).isFalse();
+        Mockito.verify(bookRepository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro ao salvar um empréstimo de um livro já emprestado")
+    public void loanedBookSaveTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+        Mockito.when(bookRepository.getById(1l)).thenReturn(book);
+        Mockito.when(repository.saveAndFlush(savingLoan))
+                .thenThrow(new DataIntegrityViolationException("uk_loan_active_book"));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));
+
+        //teste
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+        // resultado esperado, não defeito: criada sem stack trace
+        assertThat(exception.getStackTrace()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve propagar violações de integridade que não sejam de empréstimo ativo")
+    public void otherIntegrityViolationTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+        Mockito.when(bookRepository.getById(1l)).thenReturn(book);
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("fk_loan_book");
+        Mockito.when(repository.saveAndFlush(savingLoan)).thenThrow(violation);
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));
+
+        //teste
+        assertThat(exception).isSameAs(violation);
+    }
+
+    @Test
+    @DisplayName("Deve recusar pela disponibilidade em memória sem acessar a base")
+    public void loanedBookInMemoryTest(){
+        //cenario
+        BookAvailabilityService availability = Mockito.mock(BookAvailabilityService.class);
+        Mockito.when(availability.isAvailable(1l)).thenReturn(false);
+        LoanService service = new LoanServiceImpl(repository, bookRepository, null, availability);
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));
+
+        //teste
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+        Mockito.verifyNoInteractions(repository, bookRepository);
+        Mockito.verify(availability, Mockito.never()).loanCreated(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve atualizar a disponibilidade depois de salvar o empréstimo")
+    public void saveLoanUpdatesAvailabilityTest(){
+        //cenario
+        BookAvailabilityService availability = Mockito.mock(BookAvailabilityService.class);
+        Mockito.when(availability.isAvailable(1l)).thenReturn(true);
+        LoanService service = new LoanServiceImpl(repository, bookRepository, null, availability);
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+        Mockito.when(bookRepository.getById(1l)).thenReturn(book);
+        Mockito.when(repository.saveAndFlush(savingLoan)).thenReturn(savingLoan);
+
+        //execucao
+        service.save(savingLoan);
+
+        //teste
+        Mockito.verify(availability).loanCreated(1l);
+    }
+}
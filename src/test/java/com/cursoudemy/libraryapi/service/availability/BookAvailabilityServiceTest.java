@@ -0,0 +1,122 @@
+package com.cursoudemy.libraryapi.service.availability;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.BookAvailability;
+import com.cursoudemy.libraryapi.model.entity.repository.BookAvailabilityRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith({SpringExtension.class})
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(BookAvailabilityService.class)
+// sem transação do teste: as atualizações da cópia em memória acontecem depois do commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BookAvailabilityServiceTest {
+
+    @Autowired
+    BookAvailabilityService service;
+    @Autowired
+    BookAvailabilityRepository repository;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve manter o contador de empréstimos ativos na base e em memória")
+    public void countActiveLoansTest(){
+        //cenario
+        service.load();
+
+        //execucao
+        service.loanCreated(1L);
+        service.loanCreated(2L);
+        service.loanReturned(2L);
+
+        //verificacao
+        BookAvailability stored = repository.findById(1L).get();
+        assertThat(stored.getActiveLoans()).isEqualTo(1);
+        assertThat(stored.isAvailable()).isFalse();
+        assertThat(service.isAvailable(1L)).isFalse();
+        assertThat(service.isAvailable(2L)).isTrue();
+        assertThat(service.get(2L).getActiveLoans()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve devolver em lote sem invalidar o cache de segundo nível dos livros")
+    public void loansReturnedTest(){
+        //cenario
+        service.load();
+        service.loanCreated(10L);
+        service.loanCreated(10L);
+        service.loanCreated(11L);
+        Book book = bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("availability-1").build());
+        bookRepository.findById(book.getId());
+
+        try {
+            //execucao
+            service.loansReturned(Arrays.asList(10L, 11L));
+
+            //verificacao
+            assertThat(repository.findById(10L).get().getActiveLoans()).isEqualTo(1);
+            assertThat(repository.findById(10L).get().isAvailable()).isFalse();
+            assertThat(repository.findById(11L).get().getActiveLoans()).isZero();
+            assertThat(repository.findById(11L).get().isAvailable()).isTrue();
+            assertThat(service.isAvailable(10L)).isFalse();
+            assertThat(service.isAvailable(11L)).isTrue();
+            assertThat(entityManagerFactory.getCache().contains(Book.class, book.getId())).isTrue();
+        } finally {
+            bookRepository.deleteById(book.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Deve considerar disponível o livro que nunca foi emprestado")
+    public void neverLoanedTest(){
+        //cenario
+        service.load();
+
+        //execucao
+        BookAvailability availability = service.get(99L);
+
+        //verificacao
+        assertThat(service.isAvailable(99L)).isTrue();
+        assertThat(availability.getActiveLoans()).isZero();
+        assertThat(availability.isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve carregar a cópia em memória a partir da base")
+    public void loadTest(){
+        //cenario
+        repository.save(BookAvailability.builder().bookId(5L).activeLoans(1).available(false).build());
+
+        //execucao
+        service.load();
+
+        //verificacao
+        assertThat(service.isAvailable(5L)).isFalse();
+        assertThat(service.get(5L).getVersion()).isEqualTo(0L);
+    }
+}
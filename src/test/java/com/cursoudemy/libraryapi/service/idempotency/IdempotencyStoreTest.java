@@ -0,0 +1,139 @@
+package com.cursoudemy.libraryapi.service.idempotency;
+
+import com.cursoudemy.libraryapi.model.entity.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith({SpringExtension.class})
+@ActiveProfiles("test")
+@DataJpaTest
+public class IdempotencyStoreTest {
+
+    static final Instant NOW = Instant.parse("2024-01-10T10:00:00Z");
+
+    @Autowired
+    IdempotencyRecordRepository repository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Deve expirar as respostas em memória pelo ttl e limitar a quantidade de chaves")
+    public void inMemoryStoreTest() {
+        //cenario
+        AtomicLong nanos = new AtomicLong();
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100, Duration.ofMinutes(10), nanos::get);
+
+        //execucao
+        store.save("chave", response(NOW));
+        for (int i = 0; i < 1000; i++) {
+            store.save("outra-" + i, response(NOW));
+        }
+        boolean boundedSize = store.size() <= 100;
+        store.save("chave", response(NOW));
+        boolean foundBeforeTtl = store.find("chave").isPresent();
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        //teste
+        assertThat(boundedSize).isTrue();
+        assertThat(foundBeforeTtl).isTrue();
+        assertThat(store.find("chave")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve gravar as respostas na base e ignorar e apagar as vencidas")
+    public void jdbcStoreTest() {
+        //cenario
+        JdbcIdempotencyStore store = jdbcStore(NOW);
+        store.save("recente", response(NOW.minus(Duration.ofMinutes(30))));
+        store.save("vencida", response(NOW.minus(Duration.ofHours(2))));
+
+        //execucao
+        IdempotentResponse found = store.find("recente").get();
+        boolean expiredFound = store.find("vencida").isPresent();
+        int purged = store.purgeExpired();
+
+        //teste
+        assertThat(found.getStatus()).isEqualTo(201);
+        assertThat(new String(found.getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}");
+        assertThat(found.getFingerprint()).isEqualTo("abc");
+        assertThat(expiredFound).isFalse();
+        assertThat(purged).isEqualTo(1);
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve reservar a chave em memória para uma única execução até gravar ou liberar")
+    public void inMemoryClaimTest() {
+        //cenario
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100, Duration.ofMinutes(10));
+
+        //execucao
+        boolean first = store.claim("chave", "abc");
+        boolean duplicate = store.claim("chave", "abc");
+        store.release("chave");
+        boolean afterRelease = store.claim("chave", "abc");
+        store.save("chave", response(NOW));
+        boolean afterSave = store.claim("chave", "abc");
+
+        //teste
+        assertThat(first).isTrue();
+        assertThat(duplicate).isFalse();
+        assertThat(afterRelease).isTrue();
+        assertThat(afterSave).isFalse();
+        assertThat(store.find("chave")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Deve reservar a chave na base para uma única instância e assumir reservas abandonadas")
+    public void jdbcClaimTest() {
+        //cenario
+        JdbcIdempotencyStore instance = jdbcStore(NOW);
+        JdbcIdempotencyStore other = jdbcStore(NOW);
+        JdbcIdempotencyStore later = jdbcStore(NOW.plus(Duration.ofMinutes(2)));
+
+        //execucao
+        boolean first = instance.claim("chave", "abc");
+        boolean duplicate = other.claim("chave", "abc");
+        boolean pendingFound = other.find("chave").isPresent();
+        boolean takenOver = later.claim("chave", "abc");
+        later.save("chave", response(NOW.plus(Duration.ofMinutes(2))));
+        boolean afterSave = other.claim("chave", "abc");
+        instance.claim("liberada", "abc");
+        instance.release("liberada");
+        boolean afterRelease = other.claim("liberada", "abc");
+
+        //teste
+        assertThat(first).isTrue();
+        assertThat(duplicate).isFalse();
+        assertThat(pendingFound).isFalse();
+        assertThat(takenOver).isTrue();
+        assertThat(afterSave).isFalse();
+        assertThat(later.find("chave").get().getStatus()).isEqualTo(201);
+        assertThat(afterRelease).isTrue();
+    }
+
+    private JdbcIdempotencyStore jdbcStore(Instant now) {
+        return new JdbcIdempotencyStore(repository, jdbcTemplate, Duration.ofHours(1), Duration.ofMinutes(1),
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static IdempotentResponse response(Instant createdAt) {
+        return new IdempotentResponse("abc", 201, "application/json",
+                "{\"id\":1}".getBytes(StandardCharsets.UTF_8), createdAt);
+    }
+}
@@ -0,0 +1,134 @@
+package com.cursoudemy.libraryapi.service.overdue;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.JobCheckpoint;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.JobCheckpointRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.OverdueLoan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith({SpringExtension.class})
+@ActiveProfiles("test")
+@DataJpaTest
+public class OverdueLoanJobTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2021, 3, 1);
+    private static final Clock CLOCK = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    @Autowired
+    TestEntityManager entityManager;
+    @Autowired
+    LoanRepository loanRepository;
+    @Autowired
+    JobCheckpointRepository checkpointRepository;
+
+    @Test
+    @DisplayName("Deve notificar em lotes apenas os empréstimos em atraso")
+    public void notifyOverdueInChunksTest() throws Exception {
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            persistLoan("overdue-" + i, TODAY.minusDays(30 + i), false);
+        }
+        persistLoan("returned", TODAY.minusDays(40), true);
+        persistLoan("recent", TODAY.minusDays(3), false);
+        RecordingNotifier notifier = new RecordingNotifier(-1);
+        OverdueLoanJob job = new OverdueLoanJob(loanRepository, checkpointRepository, notifier, 14, 2, Duration.ofMinutes(1), CLOCK);
+
+        //execucao
+        long notified = job.run();
+
+        //verificacao
+        assertThat(notified).isEqualTo(5);
+        assertThat(notifier.chunks).extracting(List::size).containsExactly(2, 2, 1);
+        JobCheckpoint checkpoint = checkpointRepository.findById(OverdueLoanJob.JOB_NAME).get();
+        assertThat(checkpoint.isFinished()).isTrue();
+        assertThat(checkpoint.getProcessed()).isEqualTo(5);
+        assertThat(checkpoint.getCutoff()).isEqualTo(TODAY.minusDays(14));
+    }
+
+    @Test
+    @DisplayName("Deve retomar do último lote gravado depois de uma falha")
+    public void resumeAfterFailureTest() throws Exception {
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            persistLoan("overdue-" + i, TODAY.minusDays(30 + i), false);
+        }
+        RecordingNotifier failing = new RecordingNotifier(1);
+        OverdueLoanJob crashed = new OverdueLoanJob(loanRepository, checkpointRepository, failing, 14, 2, Duration.ofMinutes(1), CLOCK);
+        Throwable exception = catchThrowable(crashed::run);
+
+        RecordingNotifier notifier = new RecordingNotifier(-1);
+        OverdueLoanJob job = new OverdueLoanJob(loanRepository, checkpointRepository, notifier, 14, 2, Duration.ofMinutes(1), CLOCK);
+
+        //execucao
+        long notified = job.run();
+
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        assertThat(failing.chunks).hasSize(1);
+        assertThat(notified).isEqualTo(3);
+        assertThat(notifier.chunks).extracting(List::size).containsExactly(2, 1);
+        assertThat(checkpointRepository.findById(OverdueLoanJob.JOB_NAME).get().getProcessed()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Deve parar ao esgotar o tempo máximo e continuar na próxima execução")
+    public void stopWhenRuntimeExceededTest() throws Exception {
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            persistLoan("overdue-" + i, TODAY.minusDays(30 + i), false);
+        }
+        RecordingNotifier notifier = new RecordingNotifier(-1);
+        OverdueLoanJob job = new OverdueLoanJob(loanRepository, checkpointRepository, notifier, 14, 2, Duration.ZERO, CLOCK);
+
+        //execucao
+        long first = job.run();
+        long second = job.run();
+
+        //verificacao
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isEqualTo(2);
+        assertThat(checkpointRepository.findById(OverdueLoanJob.JOB_NAME).get().isFinished()).isFalse();
+    }
+
+    private void persistLoan(String isbn, LocalDate loanDate, boolean returned) {
+        Book book = entityManager.persist(Book.builder().author("Artur").title("As aventuras").isbn(isbn).build());
+        entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(loanDate).returned(returned).build());
+    }
+
+    // grava os lotes recebidos; com failAfter >= 0 falha no lote seguinte ao de número failAfter
+    private static class RecordingNotifier implements OverdueLoanNotifier {
+        private final int failAfter;
+        private final List<List<OverdueLoan>> chunks = new ArrayList<>();
+
+        RecordingNotifier(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public void notify(List<OverdueLoan> loans) {
+            if (chunks.size() == failAfter) {
+                throw new IllegalStateException("Falha simulada");
+            }
+            chunks.add(loans);
+        }
+    }
+}
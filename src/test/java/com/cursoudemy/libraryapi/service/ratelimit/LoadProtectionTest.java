@@ -0,0 +1,111 @@
+package com.cursoudemy.libraryapi.service.ratelimit;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoadProtectionTest {
+
+    @Test
+    @DisplayName("Deve aceitar a rajada, recusar o excesso e liberar uma requisição por intervalo")
+    public void rateLimiterTest() {
+        //cenario
+        AtomicLong nanos = new AtomicLong();
+        ClientRateLimiter limiter = new ClientRateLimiter(2, 3, 100, nanos::get);
+
+        //execucao
+        List<Long> burst = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            burst.add(limiter.tryAcquire("cliente"));
+        }
+        long otherClient = limiter.tryAcquire("outro");
+        nanos.addAndGet(Duration.ofMillis(500).toNanos());
+        long afterInterval = limiter.tryAcquire("cliente");
+        long again = limiter.tryAcquire("cliente");
+
+        //teste
+        assertThat(burst).containsExactly(0L, 0L, 0L, Duration.ofMillis(500).toNanos());
+        assertThat(otherClient).isZero();
+        assertThat(afterInterval).isZero();
+        assertThat(again).isEqualTo(Duration.ofMillis(500).toNanos());
+    }
+
+    @Test
+    @DisplayName("Deve limitar a quantidade de clientes e esquecer os que voltaram a ter o balde cheio")
+    public void rateLimiterBoundedStateTest() {
+        //cenario
+        AtomicLong nanos = new AtomicLong();
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 100, nanos::get);
+
+        //execucao
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire("cliente-" + i);
+        }
+        boolean bounded = limiter.clients() <= 100;
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        //teste
+        assertThat(bounded).isTrue();
+        assertThat(limiter.clients()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve recusar acima do limite de requisições em andamento e aceitar depois da saída")
+    public void inFlightSheddingTest() {
+        //cenario
+        LoadShedder shedder = new LoadShedder(2, Duration.ofMillis(500), Duration.ofSeconds(1), () -> null);
+
+        //execucao
+        LoadShedder.Decision first = shedder.tryEnter();
+        LoadShedder.Decision second = shedder.tryEnter();
+        LoadShedder.Decision third = shedder.tryEnter();
+        shedder.exit();
+        LoadShedder.Decision afterExit = shedder.tryEnter();
+
+        //teste
+        assertThat(first).isEqualTo(LoadShedder.Decision.ACCEPTED);
+        assertThat(second).isEqualTo(LoadShedder.Decision.ACCEPTED);
+        assertThat(third).isEqualTo(LoadShedder.Decision.IN_FLIGHT);
+        assertThat(afterExit).isEqualTo(LoadShedder.Decision.ACCEPTED);
+        assertThat(shedder.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve recusar enquanto a espera média por conexão na janela passar do limite")
+    public void poolWaitSheddingTest() {
+        //cenario
+        AtomicLong nanos = new AtomicLong();
+        Timer acquire = Timer.builder("hikaricp.connections.acquire").register(new SimpleMeterRegistry());
+        LoadShedder shedder = new LoadShedder(100, Duration.ofMillis(500), Duration.ofSeconds(1), () -> acquire, nanos::get);
+
+        //execucao
+        acquire.record(800, TimeUnit.MILLISECONDS);
+        acquire.record(600, TimeUnit.MILLISECONDS);
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        LoadShedder.Decision slowPool = shedder.tryEnter();
+        acquire.record(10, TimeUnit.MILLISECONDS);
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        LoadShedder.Decision fastPool = shedder.tryEnter();
+        shedder.exit();
+        acquire.record(900, TimeUnit.MILLISECONDS);
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        shedder.tryEnter();
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        LoadShedder.Decision idleWindow = shedder.tryEnter();
+
+        //teste
+        assertThat(slowPool).isEqualTo(LoadShedder.Decision.POOL_WAIT);
+        assertThat(fastPool).isEqualTo(LoadShedder.Decision.ACCEPTED);
+        assertThat(idleWindow).isEqualTo(LoadShedder.Decision.ACCEPTED);
+        assertThat(shedder.inFlight()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,127 @@
+package com.cursoudemy.libraryapi.service.search;
+
+import com.cursoudemy.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        index = new BookSearchIndex("");
+        index.index(book(1L, "Memórias póstumas de Brás Cubas", "Machado de Assis"));
+        index.index(book(2L, "Dom Casmurro", "Machado de Assis"));
+        index.index(book(3L, "O cortiço", "Aluísio Azevedo"));
+        index.index(book(4L, "Machado: uma biografia", "Artur"));
+        index.awaitPending(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Test
+    @DisplayName("Deve ordenar por relevância, com o título pesando mais que o autor")
+    public void searchRankingTest() {
+        //execucao
+        BookSearchIndex.Hits hits = index.search("machado", 0, 10);
+
+        //teste
+        assertThat(hits.getTotal()).isEqualTo(3);
+        assertThat(hits.getIds().get(0)).isEqualTo(4L);
+        assertThat(hits.getIds()).containsExactlyInAnyOrder(4L, 1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar por prefixo, sem acento e com erro de digitação")
+    public void searchPrefixAndFuzzyTest() {
+        assertThat(index.search("casm", 0, 10).getIds()).containsExactly(2L);
+        assertThat(index.search("memorias", 0, 10).getIds()).containsExactly(1L);
+        assertThat(index.search("cortisso", 0, 10).getIds()).containsExactly(3L);
+        assertThat(index.search("assis dom", 0, 10).getIds()).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve paginar os resultados")
+    public void searchPagingTest() {
+        //execucao
+        BookSearchIndex.Hits first = index.search("machado", 0, 2);
+        BookSearchIndex.Hits second = index.search("machado", 1, 2);
+
+        //teste
+        assertThat(first.getIds()).hasSize(2);
+        assertThat(second.getIds()).hasSize(1);
+        assertThat(second.getTotal()).isEqualTo(3);
+        assertThat(second.getIds()).doesNotContainAnyElementsOf(first.getIds());
+    }
+
+    @Test
+    @DisplayName("Deve refletir atualizações e remoções")
+    public void updateAndRemoveTest() throws Exception {
+        //execucao
+        index.index(book(2L, "Quincas Borba", "Machado de Assis"));
+        index.remove(3L);
+        index.awaitPending(5, TimeUnit.SECONDS);
+
+        //teste
+        assertThat(index.search("casmurro", 0, 10).getIds()).isEmpty();
+        assertThat(index.search("quincas", 0, 10).getIds()).containsExactly(2L);
+        assertThat(index.search("cortiço", 0, 10).getIds()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir o índice a partir das páginas da base")
+    public void rebuildTest() throws Exception {
+        //cenario
+        List<Book> catalog = Arrays.asList(book(10L, "Iracema", "José de Alencar"), book(11L, "Senhora", "José de Alencar"));
+
+        //execucao
+        long count = index.rebuild((lastId, size) -> lastId == null ? catalog : Collections.emptyList(), 2)
+                .get(5, TimeUnit.SECONDS);
+
+        //teste
+        assertThat(count).isEqualTo(2);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("alencar", 0, 10).getIds()).containsExactlyInAnyOrder(10L, 11L);
+        assertThat(index.search("machado", 0, 10).getIds()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve manter o índice atual quando a reconstrução falhar")
+    public void rebuildFailureTest() throws Exception {
+        //execucao
+        Future<Long> rebuild = index.rebuild((lastId, size) -> {
+            if (lastId != null) {
+                throw new IllegalStateException("Base indisponível");
+            }
+            return Arrays.asList(book(10L, "Iracema", "José de Alencar"), book(11L, "Senhora", "José de Alencar"));
+        }, 2);
+        index.index(book(12L, "Ubirajara", "José de Alencar"));
+        index.awaitPending(5, TimeUnit.SECONDS);
+
+        //teste
+        assertThatThrownBy(() -> rebuild.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.search("machado", 0, 10).getIds()).containsExactlyInAnyOrder(4L, 1L, 2L);
+        assertThat(index.search("alencar", 0, 10).getIds()).containsExactly(12L);
+    }
+
+    private static Book book(Long id, String title, String author) {
+        return Book.builder().id(id).title(title).author(author).isbn("isbn-" + id).build();
+    }
+}
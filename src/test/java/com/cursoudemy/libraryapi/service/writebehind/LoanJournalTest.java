@@ -0,0 +1,88 @@
+package com.cursoudemy.libraryapi.service.writebehind;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Deve reler os empréstimos gravados no journal depois de reabrir o arquivo")
+    public void appendAndReadTest() throws Exception {
+        //cenario
+        long end;
+        try (LoanJournal journal = new LoanJournal(directory)) {
+            journal.append(event(1L, "Fulano"));
+            end = journal.append(event(2L, null));
+            journal.sync(end);
+        }
+
+        //execucao
+        List<LoanEvent> events;
+        try (LoanJournal journal = new LoanJournal(directory)) {
+            events = journal.readFrom(0);
+        }
+
+        //teste
+        assertThat(events).extracting(LoanEvent::getLoanId).containsExactly(1L, 2L);
+        assertThat(events.get(0).getCustomer()).isEqualTo("Fulano");
+        assertThat(events.get(1).getCustomer()).isNull();
+        assertThat(events.get(1).getJournalOffset()).isEqualTo(end);
+    }
+
+    @Test
+    @DisplayName("Deve descartar o registro incompleto do fim do journal")
+    public void tornTailTest() throws Exception {
+        //cenario
+        long first;
+        try (LoanJournal journal = new LoanJournal(directory)) {
+            first = journal.append(event(1L, "Fulano"));
+            journal.append(event(2L, "Ciclano"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("loans.journal").toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        //execucao
+        try (LoanJournal journal = new LoanJournal(directory)) {
+            List<LoanEvent> events = journal.readFrom(0);
+            long next = journal.append(event(3L, "Beltrano"));
+
+            //teste
+            assertThat(events).extracting(LoanEvent::getLoanId).containsExactly(1L);
+            assertThat(journal.readFrom(first)).extracting(LoanEvent::getLoanId).containsExactly(3L);
+            assertThat(next).isGreaterThan(first);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve guardar o checkpoint e zerar o journal quando tudo foi aplicado")
+    public void checkpointAndResetTest() throws Exception {
+        try (LoanJournal journal = new LoanJournal(directory)) {
+            long first = journal.append(event(1L, "Fulano"));
+            long second = journal.append(event(2L, "Ciclano"));
+            journal.checkpoint(first);
+
+            assertThat(journal.checkpoint()).isEqualTo(first);
+            assertThat(journal.readFrom(journal.checkpoint())).extracting(LoanEvent::getLoanId).containsExactly(2L);
+            assertThat(journal.resetIfApplied(first, 0)).isFalse();
+            assertThat(journal.resetIfApplied(second, 0)).isTrue();
+            assertThat(journal.size()).isZero();
+            assertThat(journal.checkpoint()).isZero();
+        }
+    }
+
+    private static LoanEvent event(Long id, String customer) {
+        return new LoanEvent(id, 10L, customer, LocalDate.of(2021, 10, 1), 0);
+    }
+}
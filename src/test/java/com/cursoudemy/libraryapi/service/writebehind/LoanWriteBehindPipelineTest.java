@@ -0,0 +1,251 @@
+package com.cursoudemy.libraryapi.service.writebehind;
+
+import com.cursoudemy.libraryapi.exception.BusinessException;
+import com.cursoudemy.libraryapi.model.entity.Book;
+import com.cursoudemy.libraryapi.model.entity.Loan;
+import com.cursoudemy.libraryapi.model.entity.repository.BookRepository;
+import com.cursoudemy.libraryapi.model.entity.repository.LoanRepository;
+import com.cursoudemy.libraryapi.service.LoanService;
+import com.cursoudemy.libraryapi.service.availability.BookAvailabilityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class LoanWriteBehindPipelineTest {
+
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void writeBehind(DynamicPropertyRegistry registry) throws Exception {
+        journalDir = Files.createTempDirectory("loan-journal");
+        registry.add("library.loans.write-behind.enabled", () -> "true");
+        registry.add("library.loans.write-behind.journal-dir", journalDir::toString);
+    }
+
+    @Autowired
+    LoanService loanService;
+    @Autowired
+    LoanWriteBehindPipeline pipeline;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    LoanRepository loanRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    ObjectProvider<MeterRegistry> registry;
+    @Autowired
+    ObjectProvider<BookAvailabilityService> availabilityProvider;
+    @Autowired
+    BookAvailabilityService availability;
+
+    @Test
+    @DisplayName("Deve devolver o id na hora e gravar o empréstimo em segundo plano")
+    public void submitTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-001").build());
+
+        //execucao
+        Loan loan = loanService.save(Loan.builder().customer("Fulano").book(book).loanDate(LocalDate.now()).build());
+
+        //teste
+        assertThat(loan.getId()).isNotNull();
+        assertThatThrownBy(() -> loanService.save(Loan.builder().customer("Ciclano").book(book).loanDate(LocalDate.now()).build()))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+        Optional<Loan> saved = awaitLoan(loan.getId());
+        assertThat(saved).isPresent();
+        assertThat(saved.get().getCustomer()).isEqualTo("Fulano");
+        assertThat(loanRepository.existsByBookIdAndReturnedFalse(book.getId())).isTrue();
+        assertThat(availability.get(book.getId()).getActiveLoans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve reaplicar o journal na subida, ignorando empréstimos já gravados")
+    public void recoveryTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-002").build());
+        Book other = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-003").build());
+        Loan applied = loanService.save(Loan.builder().customer("Fulano").book(other).loanDate(LocalDate.now()).build());
+        awaitLoan(applied.getId());
+        Path journalDir = Files.createTempDirectory("loan-journal-recovery");
+        try (LoanJournal journal = new LoanJournal(journalDir)) {
+            journal.append(new LoanEvent(applied.getId(), other.getId(), "Fulano", LocalDate.now(), 0));
+            journal.append(new LoanEvent(900_001L, book.getId(), "Ciclano", LocalDate.now(), 0));
+        }
+
+        //execucao
+        LoanWriteBehindPipeline recovered = new LoanWriteBehindPipeline(loanRepository, jdbcTemplate, transactionTemplate,
+                entityManagerFactory, availabilityProvider, registry, journalDir.toString(), 10, 10, 10, 10, 1024);
+        recovered.start();
+        recovered.stop();
+
+        //teste
+        assertThat(loanRepository.findById(900_001L)).isPresent();
+        assertThat(loanRepository.count()).isGreaterThanOrEqualTo(2);
+        assertThat(Files.size(journalDir.resolve("loans.journal"))).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve descartar o empréstimo recusado pela base sem contá-lo no livro")
+    public void rejectedLoanTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-005").build());
+        // dois empréstimos aceitos do mesmo livro: a constraint uk_loan_active_book recusa o segundo
+        Path journalDir = Files.createTempDirectory("loan-journal-rejected");
+        try (LoanJournal journal = new LoanJournal(journalDir)) {
+            journal.append(new LoanEvent(900_101L, book.getId(), "Fulano", LocalDate.now(), 0));
+            journal.append(new LoanEvent(900_102L, book.getId(), "Ciclano", LocalDate.now(), 0));
+        }
+        LoanWriteBehindPipeline recovered = new LoanWriteBehindPipeline(loanRepository, jdbcTemplate, transactionTemplate,
+                entityManagerFactory, availabilityProvider, registry, journalDir.toString(), 10, 10, 10, 10, 1024);
+        recovered.start();
+        recovered.stop();
+
+        //execucao
+        loanService.returnLoans(Collections.singletonList(900_101L), Collections.emptyList());
+        Loan next = loanService.save(Loan.builder().customer("Beltrano").book(book).loanDate(LocalDate.now()).build());
+
+        //teste
+        assertThat(loanRepository.findById(900_102L)).isEmpty();
+        assertThat(awaitLoan(next.getId())).isPresent();
+        assertThat(availability.get(book.getId()).getActiveLoans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve descartar nem devolver o livro de um empréstimo que já está na base")
+    public void duplicateEventTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-008").build());
+        Path journalDir = Files.createTempDirectory("loan-journal-duplicate");
+        try (LoanJournal journal = new LoanJournal(journalDir)) {
+            // o mesmo evento duas vezes: a segunda esbarra na chave primária do próprio empréstimo
+            journal.append(new LoanEvent(900_301L, book.getId(), "Fulano", LocalDate.now(), 0));
+            journal.append(new LoanEvent(900_301L, book.getId(), "Fulano", LocalDate.now(), 0));
+        }
+        double rejectedBefore = registry.getObject().counter("library.loans.write-behind.rejected").count();
+
+        //execucao
+        LoanWriteBehindPipeline recovered = new LoanWriteBehindPipeline(loanRepository, jdbcTemplate, transactionTemplate,
+                entityManagerFactory, availabilityProvider, registry, journalDir.toString(), 10, 10, 10, 10, 1024);
+        recovered.start();
+        recovered.stop();
+
+        //teste
+        assertThat(loanRepository.findById(900_301L)).isPresent();
+        assertThat(registry.getObject().counter("library.loans.write-behind.rejected").count()).isEqualTo(rejectedBefore);
+        assertThat(availability.get(book.getId()).getActiveLoans()).isEqualTo(1);
+        assertThat(availability.isAvailable(book.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve repetir só o que falta quando a gravação um a um cair no meio do lote")
+    public void partialFallbackRetryTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-006").build());
+        Book other = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-007").build());
+        Path journalDir = Files.createTempDirectory("loan-journal-partial");
+        try (LoanJournal journal = new LoanJournal(journalDir)) {
+            journal.append(new LoanEvent(900_201L, book.getId(), "Fulano", LocalDate.now(), 0));
+            // mesmo livro: o lote cai na gravação um a um, que recusa este
+            journal.append(new LoanEvent(900_202L, book.getId(), "Ciclano", LocalDate.now(), 0));
+            journal.append(new LoanEvent(900_203L, other.getId(), "Beltrano", LocalDate.now(), 0));
+        }
+        // a conexão cai no terceiro insert um a um, com o primeiro já gravado
+        JdbcTemplate failing = Mockito.spy(jdbcTemplate);
+        AtomicInteger rowInserts = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (rowInserts.incrementAndGet() == 3) {
+                throw new QueryTimeoutException("queda simulada");
+            }
+            return invocation.callRealMethod();
+        }).when(failing).update(Mockito.anyString(), Mockito.any(PreparedStatementSetter.class));
+        double rejectedBefore = registry.getObject().counter("library.loans.write-behind.rejected").count();
+
+        //execucao
+        LoanWriteBehindPipeline recovered = new LoanWriteBehindPipeline(loanRepository, failing, transactionTemplate,
+                entityManagerFactory, availabilityProvider, registry, journalDir.toString(), 10, 10, 10, 10, 1024);
+        recovered.start();
+        recovered.stop();
+
+        //teste
+        assertThat(loanRepository.findById(900_201L)).isPresent();
+        assertThat(loanRepository.findById(900_202L)).isEmpty();
+        assertThat(loanRepository.findById(900_203L)).isPresent();
+        assertThat(registry.getObject().counter("library.loans.write-behind.rejected").count() - rejectedBefore).isEqualTo(1);
+        assertThat(availability.get(book.getId()).getActiveLoans()).isEqualTo(1);
+        assertThat(availability.get(other.getId()).getActiveLoans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro e a vaga na fila quando o checkpoint do lote falhar")
+    public void checkpointFailureTest() throws Exception {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Artur").isbn("wb-004").build());
+        int capacity = pipeline.availableCapacity();
+        // um diretório no lugar do arquivo temporário faz o checkpoint falhar
+        Path checkpointTemp = Files.createDirectory(journalDir.resolve("loans.checkpoint.tmp"));
+        Loan loan;
+        try {
+            loan = loanService.save(Loan.builder().customer("Fulano").book(book).loanDate(LocalDate.now()).build());
+            awaitLoan(loan.getId());
+            awaitCapacity(capacity);
+        } finally {
+            Files.delete(checkpointTemp);
+        }
+
+        //execucao
+        loanService.returnLoans(Collections.singletonList(loan.getId()), Collections.emptyList());
+        Loan next = loanService.save(Loan.builder().customer("Ciclano").book(book).loanDate(LocalDate.now()).build());
+
+        //teste
+        assertThat(awaitLoan(next.getId())).isPresent();
+        awaitCapacity(capacity);
+        assertThat(pipeline.availableCapacity()).isEqualTo(capacity);
+    }
+
+    private void awaitCapacity(int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && pipeline.availableCapacity() != expected; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private Optional<Loan> awaitLoan(Long id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Optional<Loan> loan = loanRepository.findById(id);
+            if (loan.isPresent()) {
+                return loan;
+            }
+            Thread.sleep(50);
+        }
+        return Optional.empty();
+    }
+}